@@ -16,10 +16,14 @@
 package com.markuspage.calpooper.cli;
 
 import com.markuspage.calpooper.ical.CalendarParser;
+import com.markuspage.calpooper.ical.CompressedInput;
+import com.markuspage.calpooper.ical.DecodingReader;
 import com.markuspage.calpooper.ical.Event;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -43,6 +47,8 @@ public class CalPooperApp {
     //private static final String OUT_FILE = "o";
     private static final String GREP = "g";
     //private static final String GREP_LONG = "grep";
+    private static final String CHARSET_LONG = "charset";
+    private static final String CHARSET = "c";
     
     /**
      * @param args the command line arguments
@@ -60,9 +66,10 @@ public class CalPooperApp {
                 
                 final String inFile = line.getOptionValue(IN_FILE);
                 final String grep = line.getOptionValue(GREP);
+                final Charset charset = getCharset(line);
                 final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
                 
-                try (Reader r = new FileReader(inFile)) {
+                try (Reader r = new DecodingReader(CompressedInput.open(Paths.get(inFile)), charset)) {
                 
                     final List<Event> events = app.grepForEvents(r, grep);
                     
@@ -94,14 +101,27 @@ public class CalPooperApp {
                 .parse(getOptions(), args);
     }
 
+    private static Charset getCharset(final CommandLine line) throws ParseException {
+        if (!line.hasOption(CHARSET)) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(line.getOptionValue(CHARSET));
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException("Unsupported charset: " + line.getOptionValue(CHARSET));
+        }
+    }
+
     private static Options getOptions() {
         var result = new Options();
         
-        result.addOption(IN_FILE, IN_FILE_LONG, true, "Input file");
+        result.addOption(IN_FILE, IN_FILE_LONG, true, "Input file (plain, gzip or zstd compressed)");
         //result.addOption(OUT_FILE, OUT_FILE_LONG, true, "Output file");
         
         result.addOption("g", "grep", true, "Find events matching regex");
         
+        result.addOption(CHARSET, CHARSET_LONG, true, "Charset of input file (default UTF-8, overridden by a byte order mark)");
+        
         return result;
     }
 
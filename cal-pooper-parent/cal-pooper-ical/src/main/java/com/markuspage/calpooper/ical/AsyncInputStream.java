@@ -0,0 +1,218 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Input stream reading from a source stream in a background thread.
+ *
+ * The background thread fills a fixed number of chunks that are handed over
+ * to the reader through a queue and recycled once consumed. This bounds the
+ * memory used while letting for instance decompression run in parallel with
+ * parsing. A failure in the background thread is rethrown to the reader on
+ * this and every later read.
+ *
+ * Closing the stream closes the source and waits a short while for the
+ * background thread to stop. A daemon thread stuck in a read that ignores
+ * both is left to finish on its own.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public class AsyncInputStream extends InputStream {
+
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final int DEFAULT_CHUNK_COUNT = 4;
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private final InputStream source;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> filled = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    private Chunk current;
+    private int position;
+    private boolean eof;
+    private IOException failure;
+    private boolean closed;
+
+    public AsyncInputStream(InputStream source) {
+        this(source, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNK_COUNT);
+    }
+
+    /**
+     * @param source to read from in the background
+     * @param chunkSize size of each buffer handed over
+     * @param chunkCount number of buffers the background thread can fill
+     * ahead of the reader
+     */
+    public AsyncInputStream(InputStream source, int chunkSize, int chunkCount) {
+        if (chunkSize <= 0 || chunkCount <= 0) {
+            throw new IllegalArgumentException("Chunk size and count must be positive");
+        }
+        this.source = source;
+        this.free = new ArrayBlockingQueue<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            free.add(new Chunk(new byte[chunkSize]));
+        }
+        this.thread = new Thread(this::produce, "cal-pooper-async-input");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current.data[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        final int n = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        return current == null ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        thread.interrupt();
+        try {
+            // Makes a read that does not respond to interrupts fail
+            source.close();
+        } finally {
+            try {
+                thread.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while closing");
+            }
+        }
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (current == null || position >= current.length) {
+            if (failure != null) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+            if (eof) {
+                return false;
+            }
+            if (current != null) {
+                free.add(current);
+                current = null;
+            }
+            final Chunk next;
+            try {
+                next = filled.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for input");
+            }
+            if (next.failure != null) {
+                failure = next.failure;
+                continue;
+            }
+            if (next.length < 0) {
+                eof = true;
+                return false;
+            }
+            current = next;
+            position = 0;
+        }
+        return true;
+    }
+
+    private void produce() {
+        try (InputStream in = source) {
+            while (true) {
+                final Chunk chunk = free.take();
+                chunk.length = readFully(in, chunk.data);
+                filled.add(chunk);
+                if (chunk.length < 0) {
+                    break;
+                }
+            }
+        } catch (IOException ex) {
+            fail(ex);
+        } catch (InterruptedException ex) {
+            // Closed by the reader
+        } catch (RuntimeException | Error ex) {
+            // The reader would otherwise wait for input forever
+            fail(new IOException("Reading in the background failed: " + ex, ex));
+        }
+    }
+
+    private void fail(IOException ex) {
+        final Chunk failure = new Chunk(null);
+        failure.failure = ex;
+        filled.add(failure);
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int count = 0;
+        while (count < buffer.length) {
+            final int n = in.read(buffer, count, buffer.length - count);
+            if (n < 0) {
+                break;
+            }
+            count += n;
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    private static final class Chunk {
+        private final byte[] data;
+        private int length;
+        private IOException failure;
+
+        private Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+
+}
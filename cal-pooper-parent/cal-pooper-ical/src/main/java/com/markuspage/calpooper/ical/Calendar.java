@@ -27,12 +27,18 @@ public class Calendar extends CalendarComponent {
     private final double version;
     private final String prodId;
     private final List<Event> events;
+    private final List<ParseError> errors;
 
     public Calendar(double version, String prodId, Properties properties, List<Event> events) {
+        this(version, prodId, properties, events, Collections.emptyList());
+    }
+
+    public Calendar(double version, String prodId, Properties properties, List<Event> events, List<ParseError> errors) {
         super(properties);
         this.version = version;
         this.prodId = prodId;
         this.events = events;
+        this.errors = errors;
     }
 
     public double getVersion() {
@@ -47,6 +53,13 @@ public class Calendar extends CalendarComponent {
         return Collections.unmodifiableList(events);
     }
 
+    /**
+     * @return problems skipped over when parsing in lenient mode
+     */
+    public List<ParseError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
     @Override
     public String toString() {
         return "Calendar {" 
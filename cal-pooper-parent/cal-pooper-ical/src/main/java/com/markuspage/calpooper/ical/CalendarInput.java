@@ -0,0 +1,249 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads unfolded content lines from an iCalendar stream.
+ *
+ * A physical line starting with a space or a horizontal tab continues the
+ * previous line (RFC 5545 section 3.1). The leading white space character is
+ * removed and the rest is appended to the logical line being built, so the
+ * parser only ever sees complete content lines. Lines may be terminated by
+ * CRLF, LF or a lone CR. Blank lines carry no content and are skipped.
+ *
+ * The logical line is built in a single growable buffer that is reused
+ * between lines, which keeps the cost of unfolding linear in the input size.
+ * An instance can also be reused for several inputs but is not thread-safe.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+class CalendarInput {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int INITIAL_LINE_CAPACITY = 128;
+    private static final int MAX_RETAINED_LINE_CAPACITY = 64 * 1024;
+
+    private Reader reader;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+
+    private StringBuilder line = new StringBuilder(INITIAL_LINE_CAPACITY);
+    private long readCount;
+    private long lineNumber;
+    private String current;
+    private boolean pushedBack;
+    private boolean endOfInput;
+
+    /**
+     * Creates an input without a reader, to be given later using
+     * {@link #reset(java.io.Reader)}.
+     */
+    public CalendarInput() {
+        this(null, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CalendarInput(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CalendarInput(Reader reader, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * Prepares this input for reading from a new reader, keeping the buffers.
+     * A line buffer that has grown large for an unusually long line is
+     * released.
+     *
+     * @param reader to read from or null to only release the current one
+     */
+    public void reset(Reader reader) {
+        this.reader = reader;
+        position = 0;
+        limit = 0;
+        readCount = 0;
+        lineNumber = 0;
+        current = null;
+        pushedBack = false;
+        endOfInput = false;
+        if (line.capacity() > MAX_RETAINED_LINE_CAPACITY) {
+            line = new StringBuilder(INITIAL_LINE_CAPACITY);
+        } else {
+            line.setLength(0);
+        }
+    }
+
+    /**
+     * @return the next unfolded content line or null at end of input
+     * @throws IOException in case of read failure
+     */
+    public String nextLine() throws IOException {
+        if (pushedBack) {
+            pushedBack = false;
+            return current;
+        }
+        current = null;
+        line.setLength(0);
+        do {
+            if (!readPhysicalLine()) {
+                endOfInput = true;
+                return null;
+            }
+        } while (line.length() == 0);
+
+        lineNumber = readCount;
+        int next;
+        while ((next = peek()) == ' ' || next == '\t') {
+            position++;
+            readPhysicalLine();
+        }
+        current = line.toString();
+        return current;
+    }
+
+    /**
+     * Makes the next call to {@link #nextLine()} return the last content line
+     * again.
+     */
+    public void pushBack() {
+        if (current == null) {
+            throw new IllegalStateException("No line to push back");
+        }
+        pushedBack = true;
+    }
+
+    /**
+     * Skips physical lines without unfolding or tokenizing them. Afterwards
+     * the line number is that of the last skipped line.
+     *
+     * @param count number of physical lines to skip
+     * @return false if the end of input was reached first
+     * @throws IOException in case of read failure
+     */
+    public boolean skipLines(long count) throws IOException {
+        current = null;
+        pushedBack = false;
+        try {
+            boolean partial = false;
+            while (count > 0) {
+                if (position >= limit && !fill()) {
+                    if (partial) {
+                        // Last line without line terminator
+                        readCount++;
+                    }
+                    endOfInput = true;
+                    return false;
+                }
+                final char c = buffer[position++];
+                if (c == '\n' || c == '\r') {
+                    if (c == '\r' && peek() == '\n') {
+                        position++;
+                    }
+                    readCount++;
+                    count--;
+                    partial = false;
+                } else {
+                    partial = true;
+                }
+            }
+            return true;
+        } finally {
+            lineNumber = readCount;
+        }
+    }
+
+    /**
+     * @return true once {@link #nextLine()} has returned null or
+     * {@link #skipLines(long)} has reached the end of input
+     */
+    public boolean isEndOfInput() {
+        return endOfInput;
+    }
+
+    /**
+     * @return number of physical lines consumed so far
+     */
+    public long getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * @return physical line number (1-based) where the last content line
+     * returned by {@link #nextLine()} started
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Appends the rest of the current physical line to the line buffer and
+     * consumes its line terminator.
+     *
+     * @return false if the end of input was reached before any character
+     */
+    private boolean readPhysicalLine() throws IOException {
+        if (position >= limit && !fill()) {
+            return false;
+        }
+        while (true) {
+            int start = position;
+            while (position < limit) {
+                final char c = buffer[position];
+                if (c == '\n' || c == '\r') {
+                    line.append(buffer, start, position - start);
+                    position++;
+                    if (c == '\r' && peek() == '\n') {
+                        position++;
+                    }
+                    readCount++;
+                    return true;
+                }
+                position++;
+            }
+            line.append(buffer, start, position - start);
+            if (!fill()) {
+                readCount++;
+                return true;
+            }
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = reader.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        position = 0;
+        limit = Math.max(n, 0);
+        return n > 0;
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the input is not a valid calendar.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public class CalendarParseException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long lineNumber;
+    private final String reason;
+
+    public CalendarParseException(long lineNumber, String reason) {
+        super("Parse error at " + lineNumber + ": " + reason);
+        this.lineNumber = lineNumber;
+        this.reason = reason;
+    }
+
+    /**
+     * @return physical line number (1-based) where the problem was found
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public ParseError toParseError() {
+        return new ParseError(lineNumber, reason);
+    }
+
+}
@@ -15,7 +15,6 @@
  */
 package com.markuspage.calpooper.ical;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
@@ -23,133 +22,209 @@ import java.util.List;
 import java.util.Properties;
 
 /**
+ * Parser for iCalendar (RFC 5545) input.
+ *
+ * By default the parser is strict and fails with a
+ * {@link CalendarParseException} on the first malformed line. In lenient mode
+ * a problem is instead recorded as a {@link ParseError} in the resulting
+ * {@link Calendar} and parsing continues from the next BEGIN:VEVENT, up to a
+ * maximum number of errors.
+ *
+ * Instances are immutable and can be shared between threads. Each thread
+ * reuses its own read buffers between calls, so parsing many small inputs
+ * does not pay for setting up new buffers every time.
  *
  * @author Markus Kilås <markus@kilas.se>
  */
 public class CalendarParser {
-    
+
+    private static final ThreadLocal<CalendarInput> INPUTS = ThreadLocal.withInitial(CalendarInput::new);
+
+    private final boolean lenient;
+    private final int maxErrors;
+
+    /**
+     * Creates a strict parser.
+     */
+    public CalendarParser() {
+        this(false, 0);
+    }
+
+    /**
+     * @param lenient true to skip over malformed events instead of failing
+     * @param maxErrors number of errors tolerated in lenient mode before
+     * giving up with a {@link CalendarParseException}
+     */
+    public CalendarParser(boolean lenient, int maxErrors) {
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("Max errors must not be negative");
+        }
+        this.lenient = lenient;
+        this.maxErrors = maxErrors;
+    }
+
+    public boolean isLenient() {
+        return lenient;
+    }
+
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
     public Calendar parseFirst(Reader reader) throws IOException {
-        
-        CalendarInput input = new CalendarInput(reader);
-        
+        return parseFirst(reader, 1);
+    }
+
+    /**
+     * Parses the first calendar, starting at the given physical line.
+     *
+     * When resuming at a line after the first one the input is assumed to be
+     * inside a VCALENDAR and everything up to the next BEGIN:VEVENT is
+     * skipped. The skipped lines are only scanned for line terminators. Line
+     * numbers in errors are still counted from the start of the input, so the
+     * line number of a {@link CalendarParseException} can be used to resume
+     * after a failed parse.
+     *
+     * @param reader to read from
+     * @param fromLine physical line number (1-based) to start parsing at
+     * @return the parsed calendar
+     * @throws IOException in case of read failure or parse error
+     */
+    public Calendar parseFirst(Reader reader, long fromLine) throws IOException {
+        if (fromLine < 1) {
+            throw new IllegalArgumentException("Line numbers start at 1");
+        }
+
+        final CalendarInput input = INPUTS.get();
+        input.reset(reader);
+        try {
+            return parseCalendar(input, fromLine);
+        } finally {
+            input.reset(null);
+        }
+    }
+
+    private Calendar parseCalendar(final CalendarInput input, long fromLine) throws IOException {
         final double version;
         final String prodId;
         final Properties properties = new Properties();
         final List<Event> events = new ArrayList<>();
+        final List<ParseError> errors = new ArrayList<>();
         
         String line;
         
-        line = input.nextLine();
-        if (!"BEGIN:VCALENDAR".equals(line)) {
-            throw parseException(input, "Expected VCALENDAR");
+        if (fromLine > 1) {
+            if (!input.skipLines(fromLine - 1)) {
+                handleError(parseException(input, "Unexpected end of file before line " + fromLine), errors);
+                return new Calendar(0.0, null, properties, events, errors);
+            }
+            skipToNextEvent(input);
+        } else {
+            line = input.nextLine();
+            if (!"BEGIN:VCALENDAR".equals(line)) {
+                handleError(parseException(input, "Expected VCALENDAR"), errors);
+                if (!skipToCalendar(input)) {
+                    return new Calendar(0.0, null, properties, events, errors);
+                }
+            }
         }
         
-        String lastProperty = null;
-        String partialProperty = null;
         boolean ended = false;
+        boolean truncated = false;
         while ((line = input.nextLine()) != null) {           
-            
-            String[] property = line.split(":", 2);
-            
-            if (line.startsWith(" ")) {
-                if (partialProperty != null) {
-                    property[0] = partialProperty + line.substring(1);
-                    partialProperty = null;
-                } else if (lastProperty != null) {
-                    properties.setProperty(lastProperty, properties.getProperty(lastProperty) + line.substring(1));
-                    continue;
-                } else {
-                    throw parseException(input, "Unexpected with property value at this point");
+            try {
+                String[] property = line.split(":", 2);
+
+                if (property.length != 2) {
+                    throw parseException(input, "Expected property");
                 }
-            }
-            
-            if (property.length != 2) {
-                partialProperty = line;
-                continue;
-            }
 
-            if ("BEGIN".equals(property[0])) {
-                switch (property[1]) {
-                    case "VEVENT":
-                        events.add(parseEvent(input));
+                if ("BEGIN".equals(property[0])) {
+                    switch (property[1]) {
+                        case "VEVENT":
+                            events.add(parseEvent(input));
+                            break;
+                        default:
+                            ignoreComponent(property[1], input);
+                            //throw new IOException("Unsupport component: " + property[1]);
+                    }
+                } else if ("END".equals(property[0])) { 
+                    if ("VCALENDAR".equals(property[1])) {
+                        ended = true;
                         break;
-                    default:
-                        ignoreComponent(property[1], input);
-                        //throw new IOException("Unsupport component: " + property[1]);
-                }
-                lastProperty = null;
-            } else if ("END".equals(property[0])) { 
-                if ("VCALENDAR".equals(property[1])) {
-                    ended = true;
-                    break;
+                    } else {
+                        throw parseException(input, "Expected end of VEVENT but got: " + property[1]);
+                    }
                 } else {
-                    throw parseException(input, "Expected end of VEVENT but got: " + property[1]);
-                }
-            } else {
-                if (properties.containsKey(property[0])) {
-                    throw parseException(input, "Duplicate property: " + property[0]);
-                }
+                    if (properties.containsKey(property[0])) {
+                        throw parseException(input, "Duplicate property: " + property[0]);
+                    }
 
-                properties.setProperty(property[0], property[1]);
-                lastProperty = property[0];
+                    properties.setProperty(property[0], property[1]);
+                }
+            } catch (CalendarParseException ex) {
+                // An end of file error inside a component also covers the
+                // missing END:VCALENDAR
+                truncated = input.isEndOfInput();
+                handleError(ex, errors);
+                skipToNextEvent(input);
             }
         }
         
-        if (!ended) {
-            throw parseException(input, "Unexpected end of file in VCALENDAR");
-        } else {
-            version = Double.parseDouble(properties.getProperty("VERSION", "0.0"));
-            prodId = properties.getProperty("PRODID");
-
-            return new Calendar(version, prodId, properties, events);
+        if (!ended && !truncated) {
+            handleError(parseException(input, "Unexpected end of file in VCALENDAR"), errors);
         }
+
+        version = Double.parseDouble(properties.getProperty("VERSION", "0.0"));
+        prodId = properties.getProperty("PRODID");
+
+        return new Calendar(version, prodId, properties, events, errors);
+    }
+
+    private static boolean isDateList(String name) {
+        final int end = name.indexOf(';');
+        final String plainName = end < 0 ? name : name.substring(0, end);
+        return "EXDATE".equals(plainName) || "RDATE".equals(plainName);
     }
 
     private Event parseEvent(final CalendarInput input) throws IOException {
         final Properties properties = new Properties();
         
-        String lastProperty = null;
-        String partialProperty = null;
         boolean ended = false;
         String line;
         while ((line = input.nextLine()) != null) {
             
             String[] property = line.split(":", 2);
             
-            if (line.startsWith(" ")) {
-                if (partialProperty != null) {
-                    property[0] = partialProperty + property[0].substring(1);
-                    partialProperty = null;
-                } else if (lastProperty != null) {
-                    properties.setProperty(lastProperty, properties.getProperty(lastProperty) + line.substring(1));
-                    continue;
-                } else {
-                    throw parseException(input, "Unexpected with property value at this point");
-                }
-            }
-            
             if (property.length != 2) {
-                partialProperty = line;
-                continue;
+                throw parseException(input, "Expected property");
             }
             
             if ("BEGIN".equals(property[0])) {
                 switch (property[1]) {
+                    case "VEVENT":
+                        input.pushBack();
+                        throw parseException(input, "Expected end of VEVENT but got: BEGIN:VEVENT");
                     default:
                         ignoreComponent(property[1], input);
                         //throw new IOException("Unsupport component: " + property[1]);
                 }
-                lastProperty = null;
             } else if ("END".equals(property[0])) {
                 if ("VEVENT".equals(property[1])) {
                     ended = true;
                     break;
                 } else {
+                    input.pushBack();
                     throw parseException(input, "Expected end of VEVENT but got: " + property[1]);
                 }
             } else {
-                properties.setProperty(property[0], property[1]);
-                lastProperty = property[0];
+                final String previous = properties.getProperty(property[0]);
+                if (previous != null && isDateList(property[0])) {
+                    // EXDATE and RDATE may be given several times
+                    properties.setProperty(property[0], previous + "," + property[1]);
+                } else {
+                    properties.setProperty(property[0], property[1]);
+                }
             }
         }
         
@@ -160,8 +235,47 @@ public class CalendarParser {
         }
     }
 
-    private IOException parseException(CalendarInput input, String message) {
-        return new IOException("Parse error at " + input.getReadCount() + ": " + message);
+    private CalendarParseException parseException(CalendarInput input, String message) {
+        return new CalendarParseException(input.getLineNumber(), message);
+    }
+
+    /**
+     * Records the error in lenient mode or throws it.
+     */
+    private void handleError(CalendarParseException ex, List<ParseError> errors) throws CalendarParseException {
+        if (!lenient || errors.size() >= maxErrors) {
+            throw ex;
+        }
+        errors.add(ex.toParseError());
+    }
+
+    /**
+     * Skips lines until the next BEGIN:VCALENDAR, which is consumed.
+     *
+     * @return false if the end of input was reached first
+     */
+    private boolean skipToCalendar(final CalendarInput input) throws IOException {
+        String line;
+        while ((line = input.nextLine()) != null) {
+            if ("BEGIN:VCALENDAR".equals(line)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips lines until the next BEGIN:VEVENT or END:VCALENDAR, which is left
+     * to be read next.
+     */
+    private void skipToNextEvent(final CalendarInput input) throws IOException {
+        String line;
+        while ((line = input.nextLine()) != null) {
+            if ("BEGIN:VEVENT".equals(line) || "END:VCALENDAR".equals(line)) {
+                input.pushBack();
+                break;
+            }
+        }
     }
     
     private void ignoreComponent(String name, final CalendarInput input) throws IOException {
@@ -176,6 +290,9 @@ public class CalendarParser {
             
             if ("BEGIN".equals(property[0])) {
                 switch (property[1]) {
+                    case "VEVENT":
+                        input.pushBack();
+                        throw parseException(input, "Expected end of " + name + " but got: BEGIN:VEVENT");
                     default:
                         ignoreComponent(property[1], input);
                         //throw new IOException("Unsupport component: " + property[1]);
@@ -185,6 +302,7 @@ public class CalendarParser {
                     ended = true;
                     break;
                 } else {
+                    input.pushBack();
                     throw parseException(input, "Expected end of " + name + " but got: " + property[1]);
                 }
             } else {
@@ -196,24 +314,4 @@ public class CalendarParser {
             throw parseException(input, "Unexpected end of file in " + name);
         }
     }
-    
-    private static class CalendarInput {
-        private final BufferedReader reader;
-        private long readCount;
-
-        public CalendarInput(Reader reader) {
-            this.reader = new BufferedReader(reader);
-        }
-        
-        public String nextLine() throws IOException {
-            final String result = reader.readLine();
-            readCount++;
-            return result;
-        }
-
-        public long getReadCount() {
-            return readCount;
-        }
-        
-    }
 }
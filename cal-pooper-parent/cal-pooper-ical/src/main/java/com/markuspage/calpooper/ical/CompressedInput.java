@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens possibly compressed input, detected by its magic bytes.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public final class CompressedInput {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private CompressedInput() {
+    }
+
+    /**
+     * Wraps the stream so that gzip or Zstandard compressed input is
+     * transparently decompressed in a background thread. Other input is
+     * returned as is.
+     *
+     * @param in stream to read from, closed in case of failure
+     * @return stream with the decompressed content
+     * @throws IOException in case of read failure
+     */
+    public static InputStream open(InputStream in) throws IOException {
+        try {
+            final PushbackInputStream pushback = new PushbackInputStream(in, 4);
+            final byte[] magic = new byte[4];
+            int count = 0;
+            int n;
+            while (count < magic.length && (n = pushback.read(magic, count, magic.length - count)) > 0) {
+                count += n;
+            }
+            if (count > 0) {
+                pushback.unread(magic, 0, count);
+            }
+
+            if (isGzip(magic, count)) {
+                return new AsyncInputStream(new GZIPInputStream(pushback, GZIP_BUFFER_SIZE));
+            } else if (isZstd(magic, count)) {
+                return new AsyncInputStream(new ZstdInputStream(pushback));
+            } else {
+                return pushback;
+            }
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Opens the file as a channel. Uncompressed files are read directly from
+     * a file channel while gzip or Zstandard compressed files are
+     * decompressed in a background thread.
+     *
+     * @param path of file to read
+     * @return channel with the decompressed content
+     * @throws IOException in case of read failure
+     */
+    public static ReadableByteChannel open(Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+                // Read until 4 bytes or end of file
+            }
+            channel.position(0);
+
+            if (isGzip(magic.array(), magic.position()) || isZstd(magic.array(), magic.position())) {
+                return Channels.newChannel(open(Channels.newInputStream(channel)));
+            } else {
+                return channel;
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private static boolean isGzip(byte[] magic, int count) {
+        return count >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b;
+    }
+
+    private static boolean isZstd(byte[] magic, int count) {
+        return count >= 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5
+                && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd;
+    }
+
+}
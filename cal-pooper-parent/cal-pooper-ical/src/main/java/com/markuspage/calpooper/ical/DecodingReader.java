@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader decoding a byte channel with a reused byte and char buffer.
+ *
+ * A UTF-8 or UTF-16 byte order mark at the start of the input is skipped and
+ * takes precedence over the given charset. Malformed input is replaced in the
+ * same way as by {@link java.io.InputStreamReader}.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public class DecodingReader extends Reader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+    private Charset charset;
+    private CharsetDecoder decoder;
+    private boolean endOfInput;
+    private boolean decoded;
+    private boolean flushed;
+    private boolean closed;
+
+    public DecodingReader(InputStream in, Charset charset) {
+        this(Channels.newChannel(in), charset);
+    }
+
+    public DecodingReader(ReadableByteChannel channel, Charset charset) {
+        this(channel, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel to read from
+     * @param charset to decode with unless a byte order mark says otherwise
+     * @param bufferSize size of the byte and char buffers
+     */
+    public DecodingReader(ReadableByteChannel channel, Charset charset, int bufferSize) {
+        if (bufferSize < 4) {
+            throw new IllegalArgumentException("Buffer size must be at least 4");
+        }
+        this.channel = channel;
+        this.charset = charset;
+        // Heap buffers let the decoders use their faster array based loops
+        this.bytes = ByteBuffer.allocate(bufferSize);
+        this.chars = CharBuffer.allocate(bufferSize);
+        this.chars.flip();
+    }
+
+    /**
+     * @return charset used for decoding, which is only known for sure after
+     * the first read as it may be given by a byte order mark
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (off < 0 || len < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        final int n = Math.min(len, chars.remaining());
+        chars.get(cbuf, off, n);
+        return n;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        return chars.hasRemaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (decoder == null) {
+            detectByteOrderMark();
+        }
+        if (flushed) {
+            return false;
+        }
+        chars.clear();
+        while (chars.position() == 0) {
+            if (decoded) {
+                if (decoder.flush(chars).isUnderflow()) {
+                    flushed = true;
+                }
+                break;
+            }
+            if (!endOfInput && channel.read(bytes) < 0) {
+                endOfInput = true;
+            }
+            bytes.flip();
+            final CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (endOfInput && result.isUnderflow()) {
+                decoded = true;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    private void detectByteOrderMark() throws IOException {
+        while (bytes.position() < 3 && !endOfInput) {
+            if (channel.read(bytes) < 0) {
+                endOfInput = true;
+            }
+        }
+        final int count = bytes.position();
+        int skip = 0;
+        if (count >= 3 && (bytes.get(0) & 0xff) == 0xef && (bytes.get(1) & 0xff) == 0xbb && (bytes.get(2) & 0xff) == 0xbf) {
+            charset = StandardCharsets.UTF_8;
+            skip = 3;
+        } else if (count >= 2 && (bytes.get(0) & 0xff) == 0xfe && (bytes.get(1) & 0xff) == 0xff) {
+            charset = StandardCharsets.UTF_16BE;
+            skip = 2;
+        } else if (count >= 2 && (bytes.get(0) & 0xff) == 0xff && (bytes.get(1) & 0xff) == 0xfe) {
+            charset = StandardCharsets.UTF_16LE;
+            skip = 2;
+        }
+        bytes.flip();
+        bytes.position(skip);
+        bytes.compact();
+
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+}
@@ -15,12 +15,28 @@
  */
 package com.markuspage.calpooper.ical;
 
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  *
@@ -29,6 +45,9 @@ import java.util.Properties;
 public class Event extends CalendarComponent {
 
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("uuuuMMdd'T'HHmmssX", Locale.ENGLISH);
+    private static final DateTimeFormatter localDateTimeFormatter = DateTimeFormatter.ofPattern("uuuuMMdd'T'HHmmss", Locale.ENGLISH);
+    private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("uuuuMMdd", Locale.ENGLISH);
+    private static final Pattern durationPattern = Pattern.compile("([+-])?P(?:(\\d+)W|(?:(\\d+)D)?(?:T(?:(\\d+)H)?(?:(\\d+)M)?(?:(\\d+)S)?)?)");
 
     public Event(Properties properties) {
         super(properties);
@@ -47,6 +66,332 @@ public class Event extends CalendarComponent {
         return Date.from(zonedDateTime.toInstant());
     }
 
+    public String getStatus() {
+        return properties.getProperty("STATUS");
+    }
+
+    public String getTransparency() {
+        return properties.getProperty("TRANSP");
+    }
+
+    /**
+     * Gets the start time, also for local times with a TZID parameter and for
+     * dates.
+     *
+     * @param defaultZone zone for floating times and dates
+     * @return start time or null if the event has no DTSTART
+     * @throws DateTimeException if the value could not be parsed or has an
+     * unknown TZID
+     */
+    public Instant getStart(ZoneId defaultZone) {
+        final String name = findPropertyName("DTSTART");
+        if (name == null) {
+            return null;
+        }
+        return parseInstant(name, properties.getProperty(name), defaultZone);
+    }
+
+    /**
+     * Gets the end time from DTEND or else from DTSTART and DURATION. Without
+     * either an event on a date lasts the whole day and other events end when
+     * they start.
+     *
+     * @param defaultZone zone for floating times and dates
+     * @return end time or null if the event has no DTSTART
+     * @throws DateTimeException if a value could not be parsed or has an
+     * unknown TZID
+     */
+    public Instant getEnd(ZoneId defaultZone) {
+        final String endName = findPropertyName("DTEND");
+        if (endName != null) {
+            return parseInstant(endName, properties.getProperty(endName), defaultZone);
+        }
+        final String startName = findPropertyName("DTSTART");
+        if (startName == null) {
+            return null;
+        }
+        final String startValue = properties.getProperty(startName);
+        final Instant start = parseInstant(startName, startValue, defaultZone);
+        final String duration = properties.getProperty("DURATION");
+        if (duration != null) {
+            return plusDuration(start.atZone(getZone(startName, startValue, defaultZone)), duration).toInstant();
+        } else if (isDate(startValue)) {
+            return start.atZone(defaultZone).plusDays(1).toInstant();
+        } else {
+            return start;
+        }
+    }
+
+    public String getUid() {
+        return properties.getProperty("UID");
+    }
+
+    /**
+     * Gets the original start of the occurrence of a recurring event that this
+     * event replaces.
+     *
+     * @param defaultZone zone for floating times and dates
+     * @return the RECURRENCE-ID or null if the event has none
+     * @throws DateTimeException if the value could not be parsed or has an
+     * unknown TZID
+     */
+    public Instant getRecurrenceId(ZoneId defaultZone) {
+        final String name = findPropertyName("RECURRENCE-ID");
+        if (name == null) {
+            return null;
+        }
+        return parseInstant(name, properties.getProperty(name), defaultZone);
+    }
+
+    /**
+     * Gets the occurrences of this event that overlap a window. These are the
+     * start given by DTSTART, those generated by RRULE and those given by
+     * RDATE, less those given by EXDATE. Recurrences are generated in the
+     * local time of DTSTART so they keep the time of day across daylight
+     * saving changes. Each occurrence lasts as long as the event, with
+     * DURATION and whole days added as nominal time.
+     *
+     * @param defaultZone zone for floating times and dates
+     * @param from start of window
+     * @param to end of window, exclusive
+     * @param excluded start times of occurrences to leave out, such as those
+     * replaced by events with a RECURRENCE-ID
+     * @return the occurrences, empty if the event has no DTSTART
+     * @throws DateTimeException if a value could not be parsed, has an
+     * unknown TZID or if the RRULE is not supported
+     */
+    public IntervalSet getOccurrences(ZoneId defaultZone, long from, long to, Set<Instant> excluded) {
+        final String startName = findPropertyName("DTSTART");
+        if (startName == null) {
+            return IntervalSet.EMPTY;
+        }
+        final String startValue = properties.getProperty(startName);
+        final ZoneId zone = getZone(startName, startValue, defaultZone);
+        final ZonedDateTime start = parseInstant(startName, startValue, defaultZone).atZone(zone);
+
+        Set<Instant> exceptions = excluded;
+        final List<String> exdateNames = findPropertyNames("EXDATE");
+        if (!exdateNames.isEmpty()) {
+            exceptions = new HashSet<>(excluded);
+            for (String name : exdateNames) {
+                for (String value : properties.getProperty(name).split(",")) {
+                    exceptions.add(parseInstant(name, value, defaultZone));
+                }
+            }
+        }
+
+        final Occurrences occurrences = new Occurrences(from, to, exceptions, getOccurrenceEnd(start, startValue, defaultZone));
+        final String rule = properties.getProperty("RRULE");
+        if (rule == null) {
+            occurrences.add(start);
+        } else {
+            // Local times differ from the instants by less than a day
+            final LocalDateTime limit = LocalDateTime.ofInstant(Instant.ofEpochMilli(to), zone).plusDays(1);
+            final Recurrence recurrence = new Recurrence(rule, start.toLocalDateTime(), zone, limit);
+            LocalDateTime next;
+            while ((next = recurrence.next()) != null) {
+                occurrences.add(ZonedDateTime.of(next, zone));
+            }
+        }
+        for (String name : findPropertyNames("RDATE")) {
+            for (String value : properties.getProperty(name).split(",")) {
+                final int slash = value.indexOf('/');
+                if (slash < 0) {
+                    occurrences.add(parseInstant(name, value, defaultZone).atZone(zone));
+                } else {
+                    // A period with an explicit end or duration
+                    final ZonedDateTime periodStart = parseInstant(name, value.substring(0, slash), defaultZone).atZone(zone);
+                    final String end = value.substring(slash + 1);
+                    occurrences.add(periodStart, end.indexOf('P') >= 0 ? plusDuration(periodStart, end) : parseInstant(name, end, defaultZone).atZone(zone));
+                }
+            }
+        }
+        return occurrences.toIntervalSet();
+    }
+
+    /**
+     * @return function giving the end of an occurrence from its start
+     */
+    private UnaryOperator<ZonedDateTime> getOccurrenceEnd(ZonedDateTime start, String startValue, ZoneId defaultZone) {
+        final String endName = findPropertyName("DTEND");
+        final String duration = properties.getProperty("DURATION");
+        if (endName != null) {
+            final Instant end = parseInstant(endName, properties.getProperty(endName), defaultZone);
+            if (isDate(startValue)) {
+                final Period days = Period.between(start.toLocalDate(), end.atZone(defaultZone).toLocalDate());
+                return occurrence -> occurrence.plus(days);
+            } else {
+                final Duration exact = Duration.between(start.toInstant(), end);
+                return occurrence -> occurrence.plus(exact);
+            }
+        } else if (duration != null) {
+            // Fail on an invalid duration also without occurrences in the window
+            plusDuration(start, duration);
+            return occurrence -> plusDuration(occurrence, duration);
+        } else if (isDate(startValue)) {
+            return occurrence -> occurrence.plusDays(1);
+        } else {
+            return occurrence -> occurrence;
+        }
+    }
+
+    /**
+     * @return names of the properties including any parameters
+     */
+    private List<String> findPropertyNames(String name) {
+        final List<String> result = new ArrayList<>(1);
+        final String prefix = name + ";";
+        for (Object key : properties.keySet()) {
+            if (key instanceof String && (key.equals(name) || ((String) key).startsWith(prefix))) {
+                result.add((String) key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return name of the property including any parameters or null
+     */
+    private String findPropertyName(String name) {
+        if (properties.getProperty(name) != null) {
+            return name;
+        }
+        final String prefix = name + ";";
+        for (Object key : properties.keySet()) {
+            if (key instanceof String && ((String) key).startsWith(prefix)) {
+                return (String) key;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isDate(String value) {
+        return value.length() == 8;
+    }
+
+    private static Instant parseInstant(String name, String value, ZoneId defaultZone) {
+        if (isDate(value)) {
+            return LocalDate.parse(value, dateFormatter).atStartOfDay(defaultZone).toInstant();
+        } else if (value.endsWith("Z")) {
+            return LocalDateTime.parse(value.substring(0, value.length() - 1), localDateTimeFormatter).toInstant(ZoneOffset.UTC);
+        } else {
+            return LocalDateTime.parse(value, localDateTimeFormatter).atZone(getTzid(name, defaultZone)).toInstant();
+        }
+    }
+
+    /**
+     * @return zone the value is expressed in
+     */
+    private static ZoneId getZone(String name, String value, ZoneId defaultZone) {
+        if (isDate(value)) {
+            return defaultZone;
+        } else if (value.endsWith("Z")) {
+            return ZoneOffset.UTC;
+        } else {
+            return getTzid(name, defaultZone);
+        }
+    }
+
+    private static ZoneId getTzid(String name, ZoneId defaultZone) {
+        for (String parameter : name.split(";")) {
+            if (parameter.startsWith("TZID=")) {
+                String tzid = parameter.substring("TZID=".length());
+                if (tzid.length() > 1 && tzid.startsWith("\"") && tzid.endsWith("\"")) {
+                    tzid = tzid.substring(1, tzid.length() - 1);
+                }
+                try {
+                    return ZoneId.of(tzid);
+                } catch (DateTimeException ex) {
+                    // Not an IANA zone, VTIMEZONE definitions are not
+                    // supported but Windows names are recognized
+                    final ZoneId windowsZone = WindowsZones.get(tzid);
+                    if (windowsZone == null) {
+                        throw new DateTimeException("Unknown time zone: " + tzid, ex);
+                    }
+                    return windowsZone;
+                }
+            }
+        }
+        return defaultZone;
+    }
+
+    /**
+     * Adds a DURATION value. Weeks and days are nominal and added as calendar
+     * days in the zone of the start, so they keep the local time across
+     * daylight saving changes, while hours, minutes and seconds are exact.
+     */
+    private static ZonedDateTime plusDuration(ZonedDateTime start, String value) {
+        final Matcher matcher = durationPattern.matcher(value);
+        if (!matcher.matches() || (matcher.group(2) == null && matcher.group(3) == null
+                && matcher.group(4) == null && matcher.group(5) == null && matcher.group(6) == null)) {
+            throw new DateTimeException("Unable to parse duration: " + value);
+        }
+        try {
+            Period period = Period.ofWeeks(parseInt(matcher.group(2))).plusDays(parseInt(matcher.group(3)));
+            Duration time = Duration.ofHours(parseInt(matcher.group(4)))
+                    .plusMinutes(parseInt(matcher.group(5)))
+                    .plusSeconds(parseInt(matcher.group(6)));
+            if ("-".equals(matcher.group(1))) {
+                period = period.negated();
+                time = time.negated();
+            }
+            return start.plus(period).plus(time);
+        } catch (NumberFormatException | ArithmeticException ex) {
+            throw new DateTimeException("Unable to parse duration: " + value, ex);
+        }
+    }
+
+    private static int parseInt(String value) {
+        return value == null ? 0 : Integer.parseInt(value);
+    }
+
+    /**
+     * Collects the occurrences that overlap a window.
+     */
+    private static final class Occurrences {
+
+        private final long from;
+        private final long to;
+        private final Set<Instant> excluded;
+        private final UnaryOperator<ZonedDateTime> end;
+        private long[] starts = new long[4];
+        private long[] ends = new long[4];
+        private int count;
+
+        Occurrences(long from, long to, Set<Instant> excluded, UnaryOperator<ZonedDateTime> end) {
+            this.from = from;
+            this.to = to;
+            this.excluded = excluded;
+            this.end = end;
+        }
+
+        void add(ZonedDateTime start) {
+            if (start.toInstant().toEpochMilli() < to) {
+                add(start, end.apply(start));
+            }
+        }
+
+        void add(ZonedDateTime start, ZonedDateTime end) {
+            final long startMillis = start.toInstant().toEpochMilli();
+            final long endMillis = end.toInstant().toEpochMilli();
+            if (startMillis >= to || endMillis <= from || excluded.contains(start.toInstant())) {
+                return;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = startMillis;
+            ends[count] = endMillis;
+            count++;
+        }
+
+        IntervalSet toIntervalSet() {
+            return IntervalSet.of(starts, ends, count);
+        }
+
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
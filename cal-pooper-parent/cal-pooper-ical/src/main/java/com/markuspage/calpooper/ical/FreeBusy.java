@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Free/busy calculations over parsed calendars.
+ *
+ * Times are milliseconds since the epoch. Recurring events are expanded within
+ * the window asked for, see {@link Event#getOccurrences}.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public final class FreeBusy {
+
+    private static final DateTimeFormatter UTC_FORMATTER = DateTimeFormatter.ofPattern("uuuuMMdd'T'HHmmss'Z'", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    private FreeBusy() {
+    }
+
+    /**
+     * Gets the busy time of a calendar within a window. Events marked
+     * TRANSP:TRANSPARENT or STATUS:CANCELLED and events without DTSTART are
+     * not considered busy. An event with a RECURRENCE-ID replaces that
+     * occurrence of the recurring event with the same UID.
+     *
+     * @param calendar to get busy time for
+     * @param defaultZone zone for floating times and dates
+     * @param from start of window
+     * @param to end of window, exclusive
+     * @return the merged busy intervals overlapping the window
+     * @throws java.time.DateTimeException if an event time could not be parsed,
+     * has an unknown TZID or if a recurrence rule is not supported
+     */
+    public static IntervalSet busy(Calendar calendar, ZoneId defaultZone, long from, long to) {
+        final List<Event> events = calendar.getEvents();
+        final Instant[] recurrenceIds = new Instant[events.size()];
+        final Map<String, Set<Instant>> replaced = new HashMap<>();
+        for (int i = 0; i < recurrenceIds.length; i++) {
+            final Event event = events.get(i);
+            recurrenceIds[i] = event.getRecurrenceId(defaultZone);
+            if (recurrenceIds[i] != null && event.getUid() != null) {
+                replaced.computeIfAbsent(event.getUid(), uid -> new HashSet<>()).add(recurrenceIds[i]);
+            }
+        }
+
+        final List<IntervalSet> occurrences = new ArrayList<>(events.size());
+        for (int i = 0; i < recurrenceIds.length; i++) {
+            final Event event = events.get(i);
+            if ("TRANSPARENT".equalsIgnoreCase(event.getTransparency()) || "CANCELLED".equalsIgnoreCase(event.getStatus())) {
+                continue;
+            }
+            Set<Instant> excluded = null;
+            if (recurrenceIds[i] == null && event.getUid() != null) {
+                excluded = replaced.get(event.getUid());
+            }
+            occurrences.add(event.getOccurrences(defaultZone, from, to, excluded == null ? Collections.<Instant>emptySet() : excluded));
+        }
+        return IntervalSet.union(occurrences);
+    }
+
+    /**
+     * Finds the time within a window when none of the calendars are busy.
+     *
+     * @param busy busy intervals of each calendar
+     * @param from start of window
+     * @param to end of window, exclusive
+     * @param minDuration shortest free slot to include
+     * @return the free slots
+     */
+    public static IntervalSet commonFree(List<IntervalSet> busy, long from, long to, long minDuration) {
+        return IntervalSet.union(busy).complement(from, to, minDuration);
+    }
+
+    /**
+     * Formats busy time within a window as a VFREEBUSY component, with one
+     * FREEBUSY property per interval.
+     *
+     * @param busy busy intervals
+     * @param from start of window
+     * @param to end of window, exclusive
+     * @param uid unique identifier of the component
+     * @param timestamp time the component was created
+     * @return the VFREEBUSY component with CRLF line endings
+     */
+    public static String toVFreeBusy(IntervalSet busy, long from, long to, String uid, long timestamp) {
+        final StringBuilder sb = new StringBuilder(128 + busy.size() * 44);
+        sb.append("BEGIN:VFREEBUSY\r\n");
+        sb.append("UID:").append(uid).append("\r\n");
+        sb.append("DTSTAMP:").append(formatUtc(timestamp)).append("\r\n");
+        sb.append("DTSTART:").append(formatUtc(from)).append("\r\n");
+        sb.append("DTEND:").append(formatUtc(to)).append("\r\n");
+        for (int i = 0; i < busy.size(); i++) {
+            final long start = Math.max(from, busy.getStart(i));
+            final long end = Math.min(to, busy.getEnd(i));
+            if (start < end) {
+                sb.append("FREEBUSY:").append(formatUtc(start)).append('/').append(formatUtc(end)).append("\r\n");
+            }
+        }
+        sb.append("END:VFREEBUSY\r\n");
+        return sb.toString();
+    }
+
+    private static String formatUtc(long time) {
+        return UTC_FORMATTER.format(Instant.ofEpochMilli(time));
+    }
+
+}
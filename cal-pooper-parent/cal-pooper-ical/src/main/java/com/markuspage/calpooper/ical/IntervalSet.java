@@ -0,0 +1,271 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable set of sorted, non-overlapping half-open time intervals.
+ *
+ * Start and end times, typically milliseconds since the epoch, are kept in
+ * two primitive arrays so that large sets can be merged without creating an
+ * object per interval. Intervals that touch are merged into one.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public final class IntervalSet {
+
+    public static final IntervalSet EMPTY = new IntervalSet(new long[0], new long[0]);
+
+    private final long[] starts;
+    private final long[] ends;
+
+    private IntervalSet(long[] starts, long[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Creates a set covering the given intervals, which may be unsorted and
+     * overlapping. Empty intervals are ignored.
+     *
+     * @param starts start times
+     * @param ends end times, exclusive
+     * @param count number of intervals to read from the arrays
+     * @return the merged intervals
+     */
+    public static IntervalSet of(long[] starts, long[] ends, int count) {
+        if (count > starts.length || count > ends.length) {
+            throw new IllegalArgumentException("Count exceeds array length");
+        }
+        final long[] s = new long[count];
+        final long[] e = new long[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (ends[i] > starts[i]) {
+                s[n] = starts[i];
+                e[n] = ends[i];
+                n++;
+            }
+        }
+        if (n == 0) {
+            return EMPTY;
+        }
+
+        // The union only depends on the order of the boundaries, so starts
+        // and ends can be sorted independently and swept with a depth count
+        Arrays.sort(s, 0, n);
+        Arrays.sort(e, 0, n);
+        final long[] resultStarts = new long[n];
+        final long[] resultEnds = new long[n];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        int depth = 0;
+        long start = 0;
+        while (j < n) {
+            if (i < n && s[i] <= e[j]) {
+                if (depth++ == 0) {
+                    start = s[i];
+                }
+                i++;
+            } else {
+                if (--depth == 0) {
+                    resultStarts[size] = start;
+                    resultEnds[size] = e[j];
+                    size++;
+                }
+                j++;
+            }
+        }
+        return new IntervalSet(Arrays.copyOf(resultStarts, size), Arrays.copyOf(resultEnds, size));
+    }
+
+    /**
+     * Merges the sets with a k-way merge over their sorted intervals.
+     *
+     * @param sets to merge
+     * @return set covering all intervals of all sets
+     */
+    public static IntervalSet union(List<IntervalSet> sets) {
+        final int k = sets.size();
+        final long[][] s = new long[k][];
+        final long[][] e = new long[k][];
+        final int[] positions = new int[k];
+        final int[] heap = new int[k];
+        int heapSize = 0;
+        int total = 0;
+        for (int i = 0; i < k; i++) {
+            final IntervalSet set = sets.get(i);
+            s[i] = set.starts;
+            e[i] = set.ends;
+            total += set.size();
+            if (set.size() > 0) {
+                heap[heapSize++] = i;
+                siftUp(heap, heapSize - 1, s, positions);
+            }
+        }
+        if (heapSize == 1) {
+            return sets.get(heap[0]);
+        }
+
+        final long[] resultStarts = new long[total];
+        final long[] resultEnds = new long[total];
+        int size = 0;
+        while (heapSize > 0) {
+            final int top = heap[0];
+            final long start = s[top][positions[top]];
+            final long end = e[top][positions[top]];
+            if (++positions[top] == s[top].length) {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(heap, heapSize, s, positions);
+
+            if (size > 0 && start <= resultEnds[size - 1]) {
+                resultEnds[size - 1] = Math.max(resultEnds[size - 1], end);
+            } else {
+                resultStarts[size] = start;
+                resultEnds[size] = end;
+                size++;
+            }
+        }
+        return new IntervalSet(Arrays.copyOf(resultStarts, size), Arrays.copyOf(resultEnds, size));
+    }
+
+    /**
+     * Gets the gaps between the intervals within a window.
+     *
+     * @param from start of window
+     * @param to end of window, exclusive
+     * @param minLength shortest gap to include
+     * @return the gaps of at least the given length
+     */
+    public IntervalSet complement(long from, long to, long minLength) {
+        if (to <= from) {
+            return EMPTY;
+        }
+        final long[] resultStarts = new long[starts.length + 1];
+        final long[] resultEnds = new long[starts.length + 1];
+        int size = 0;
+
+        // First interval ending after the start of the window
+        int i = Arrays.binarySearch(ends, from);
+        i = i < 0 ? -i - 1 : i + 1;
+
+        long cursor = from;
+        for (; i < starts.length && starts[i] < to; i++) {
+            if (starts[i] > cursor && starts[i] - cursor >= minLength) {
+                resultStarts[size] = cursor;
+                resultEnds[size] = starts[i];
+                size++;
+            }
+            cursor = Math.max(cursor, ends[i]);
+        }
+        if (cursor < to && to - cursor >= minLength) {
+            resultStarts[size] = cursor;
+            resultEnds[size] = to;
+            size++;
+        }
+        return size == 0 ? EMPTY : new IntervalSet(Arrays.copyOf(resultStarts, size), Arrays.copyOf(resultEnds, size));
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    public long getStart(int index) {
+        return starts[index];
+    }
+
+    public long getEnd(int index) {
+        return ends[index];
+    }
+
+    private static void siftUp(int[] heap, int index, long[][] s, int[] positions) {
+        final int item = heap[index];
+        final long key = s[item][positions[item]];
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (s[heap[parent]][positions[heap[parent]]] <= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = item;
+    }
+
+    private static void siftDown(int[] heap, int heapSize, long[][] s, int[] positions) {
+        if (heapSize == 0) {
+            return;
+        }
+        final int item = heap[0];
+        final long key = s[item][positions[item]];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && s[heap[child + 1]][positions[heap[child + 1]]] < s[heap[child]][positions[heap[child]]]) {
+                child++;
+            }
+            if (key <= s[heap[child]][positions[heap[child]]]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = item;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof IntervalSet)) {
+            return false;
+        }
+        final IntervalSet other = (IntervalSet) obj;
+        return Arrays.equals(starts, other.starts) && Arrays.equals(ends, other.ends);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(starts) + Arrays.hashCode(ends);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = 0; i < starts.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(starts[i]).append('/').append(ends[i]);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+/**
+ * Describes a problem found while parsing a calendar in lenient mode.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public class ParseError {
+    private final long lineNumber;
+    private final String message;
+
+    public ParseError(long lineNumber, String message) {
+        this.lineNumber = lineNumber;
+        this.message = message;
+    }
+
+    /**
+     * @return physical line number (1-based) where the problem was found
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "ParseError{" + "lineNumber=" + lineNumber + ", message=" + message + '}';
+    }
+
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Generates the start times of a recurrence rule (RRULE, RFC 5545 section
+ * 3.3.10) in the local time of DTSTART.
+ *
+ * All frequencies are supported together with INTERVAL, COUNT, UNTIL, WKST,
+ * BYMONTH, BYMONTHDAY and BYDAY, including numbered BYDAY values in monthly
+ * and yearly rules. Other rule parts are rejected instead of being ignored,
+ * as that would give wrong occurrences.
+ *
+ * DTSTART always counts as the first occurrence. Generation stops at the
+ * end of the rule or at the first period starting after a limit, so a rule
+ * that never matches does not loop forever.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+final class Recurrence {
+
+    private static final DateTimeFormatter localDateTimeFormatter = DateTimeFormatter.ofPattern("uuuuMMdd'T'HHmmss", Locale.ENGLISH);
+    private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("uuuuMMdd", Locale.ENGLISH);
+
+    private final LocalDateTime start;
+    private final LocalDateTime limit;
+    private final LocalDateTime base;
+    private final ChronoUnit frequency;
+    private final int interval;
+    private final int count;
+    private final LocalDateTime until;
+    private final int[] byMonth;
+    private final int[] byMonthDay;
+    private final DayOfWeek[] byDay;
+    private final int[] byDayOrdinal;
+
+    private final List<LocalDateTime> pending = new ArrayList<>();
+    private int index;
+    private long period;
+    private int generated;
+    private boolean done;
+
+    /**
+     * @param rule RRULE value
+     * @param start DTSTART in local time
+     * @param zone zone of DTSTART, used for an UNTIL in UTC
+     * @param limit no periods starting after this time are generated
+     * @throws DateTimeException if the rule is invalid or uses unsupported
+     * parts
+     */
+    Recurrence(String rule, LocalDateTime start, ZoneId zone, LocalDateTime limit) {
+        this.start = start;
+        this.limit = limit;
+
+        ChronoUnit frequency = null;
+        int interval = 1;
+        int count = 0;
+        LocalDateTime until = null;
+        DayOfWeek weekStart = DayOfWeek.MONDAY;
+        int[] byMonth = null;
+        int[] byMonthDay = null;
+        DayOfWeek[] byDay = null;
+        int[] byDayOrdinal = null;
+        try {
+            for (String part : rule.split(";")) {
+                final String[] nameValue = part.split("=", 2);
+                if (nameValue.length != 2) {
+                    throw new DateTimeException("Invalid recurrence rule: " + rule);
+                }
+                final String value = nameValue[1];
+                switch (nameValue[0]) {
+                    case "FREQ":
+                        frequency = parseFrequency(value, rule);
+                        break;
+                    case "INTERVAL":
+                        interval = Integer.parseInt(value);
+                        break;
+                    case "COUNT":
+                        count = Integer.parseInt(value);
+                        if (count < 1) {
+                            throw new DateTimeException("Invalid recurrence rule: " + rule);
+                        }
+                        break;
+                    case "UNTIL":
+                        until = parseUntil(value, zone);
+                        break;
+                    case "WKST":
+                        weekStart = parseDayOfWeek(value, rule);
+                        break;
+                    case "BYMONTH":
+                        byMonth = parseNumbers(value, 12, false, rule);
+                        break;
+                    case "BYMONTHDAY":
+                        byMonthDay = parseNumbers(value, 31, true, rule);
+                        break;
+                    case "BYDAY":
+                        final String[] days = value.split(",");
+                        byDay = new DayOfWeek[days.length];
+                        byDayOrdinal = new int[days.length];
+                        for (int i = 0; i < days.length; i++) {
+                            final String day = days[i];
+                            final int split = day.length() - 2;
+                            if (split < 0) {
+                                throw new DateTimeException("Invalid recurrence rule: " + rule);
+                            }
+                            byDay[i] = parseDayOfWeek(day.substring(split), rule);
+                            if (split > 0) {
+                                byDayOrdinal[i] = Integer.parseInt(day.substring(0, split));
+                                if (byDayOrdinal[i] == 0 || Math.abs(byDayOrdinal[i]) > 53) {
+                                    throw new DateTimeException("Invalid recurrence rule: " + rule);
+                                }
+                            }
+                        }
+                        break;
+                    default:
+                        throw new DateTimeException("Unsupported recurrence rule: " + rule);
+                }
+            }
+        } catch (NumberFormatException ex) {
+            throw new DateTimeException("Invalid recurrence rule: " + rule, ex);
+        }
+        if (frequency == null || interval < 1 || (count > 0 && until != null)) {
+            throw new DateTimeException("Invalid recurrence rule: " + rule);
+        }
+        if (byDayOrdinal != null && frequency != ChronoUnit.MONTHS && frequency != ChronoUnit.YEARS) {
+            for (int ordinal : byDayOrdinal) {
+                if (ordinal != 0) {
+                    throw new DateTimeException("Invalid recurrence rule: " + rule);
+                }
+            }
+        }
+
+        // Without a day the rule repeats the day of DTSTART
+        if (byMonthDay == null && byDay == null) {
+            if (frequency == ChronoUnit.WEEKS) {
+                byDay = new DayOfWeek[] {start.getDayOfWeek()};
+                byDayOrdinal = new int[1];
+            } else if (frequency == ChronoUnit.MONTHS) {
+                byMonthDay = new int[] {start.getDayOfMonth()};
+            } else if (frequency == ChronoUnit.YEARS) {
+                byMonthDay = new int[] {start.getDayOfMonth()};
+                if (byMonth == null) {
+                    byMonth = new int[] {start.getMonthValue()};
+                }
+            }
+        }
+
+        switch (frequency) {
+            case WEEKS:
+                base = start.with(TemporalAdjusters.previousOrSame(weekStart));
+                break;
+            case MONTHS:
+                base = start.withDayOfMonth(1);
+                break;
+            case YEARS:
+                base = start.withDayOfYear(1);
+                break;
+            default:
+                base = start;
+        }
+
+        this.frequency = frequency;
+        this.interval = interval;
+        this.count = count;
+        this.until = until;
+        this.byMonth = byMonth;
+        this.byMonthDay = byMonthDay;
+        this.byDay = byDay;
+        this.byDayOrdinal = byDayOrdinal;
+    }
+
+    /**
+     * @return the next occurrence or null when there are no more
+     */
+    LocalDateTime next() {
+        if (generated == 0) {
+            generated = 1;
+            return start;
+        }
+        while (!done) {
+            if (index < pending.size()) {
+                final LocalDateTime next = pending.get(index++);
+                if ((count > 0 && generated >= count) || (until != null && next.isAfter(until))) {
+                    done = true;
+                } else {
+                    generated++;
+                    return next;
+                }
+            } else {
+                fillPeriod();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collects the occurrences after DTSTART within the next period.
+     */
+    private void fillPeriod() {
+        pending.clear();
+        index = 0;
+        final LocalDateTime periodStart = base.plus(period++ * interval, frequency);
+        if (periodStart.isAfter(limit)) {
+            done = true;
+            return;
+        }
+        if (frequency.compareTo(ChronoUnit.DAYS) < 0) {
+            if (periodStart.isAfter(start) && matches(periodStart.toLocalDate())) {
+                pending.add(periodStart);
+            }
+        } else {
+            final LocalDate first = periodStart.toLocalDate();
+            final LocalDate end = first.plus(1, frequency);
+            for (LocalDate date = first; date.isBefore(end); date = date.plusDays(1)) {
+                if (matches(date)) {
+                    final LocalDateTime candidate = date.atTime(start.toLocalTime());
+                    if (candidate.isAfter(start)) {
+                        pending.add(candidate);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean matches(LocalDate date) {
+        if (byMonth != null && !contains(byMonth, date.getMonthValue())) {
+            return false;
+        }
+        if (byMonthDay != null) {
+            boolean found = false;
+            for (int day : byMonthDay) {
+                if (day > 0 ? date.getDayOfMonth() == day : date.getDayOfMonth() == date.lengthOfMonth() + day + 1) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        if (byDay != null) {
+            for (int i = 0; i < byDay.length; i++) {
+                if (date.getDayOfWeek() == byDay[i] && (byDayOrdinal[i] == 0 || matchesOrdinal(date, byDayOrdinal[i]))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks a numbered BYDAY value, such as 2TU or -1FR, which counts within
+     * the month for monthly rules and yearly rules with BYMONTH and otherwise
+     * within the year.
+     */
+    private boolean matchesOrdinal(LocalDate date, int ordinal) {
+        final int day;
+        final int length;
+        if (frequency == ChronoUnit.MONTHS || byMonth != null) {
+            day = date.getDayOfMonth();
+            length = date.lengthOfMonth();
+        } else {
+            day = date.getDayOfYear();
+            length = date.lengthOfYear();
+        }
+        if (ordinal > 0) {
+            return (day - 1) / 7 + 1 == ordinal;
+        } else {
+            return (length - day) / 7 + 1 == -ordinal;
+        }
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ChronoUnit parseFrequency(String value, String rule) {
+        switch (value) {
+            case "SECONDLY":
+                return ChronoUnit.SECONDS;
+            case "MINUTELY":
+                return ChronoUnit.MINUTES;
+            case "HOURLY":
+                return ChronoUnit.HOURS;
+            case "DAILY":
+                return ChronoUnit.DAYS;
+            case "WEEKLY":
+                return ChronoUnit.WEEKS;
+            case "MONTHLY":
+                return ChronoUnit.MONTHS;
+            case "YEARLY":
+                return ChronoUnit.YEARS;
+            default:
+                throw new DateTimeException("Invalid recurrence rule: " + rule);
+        }
+    }
+
+    private static DayOfWeek parseDayOfWeek(String value, String rule) {
+        switch (value) {
+            case "MO":
+                return DayOfWeek.MONDAY;
+            case "TU":
+                return DayOfWeek.TUESDAY;
+            case "WE":
+                return DayOfWeek.WEDNESDAY;
+            case "TH":
+                return DayOfWeek.THURSDAY;
+            case "FR":
+                return DayOfWeek.FRIDAY;
+            case "SA":
+                return DayOfWeek.SATURDAY;
+            case "SU":
+                return DayOfWeek.SUNDAY;
+            default:
+                throw new DateTimeException("Invalid recurrence rule: " + rule);
+        }
+    }
+
+    private static int[] parseNumbers(String value, int max, boolean negative, String rule) {
+        final String[] parts = value.split(",");
+        final int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Integer.parseInt(parts[i]);
+            if (result[i] == 0 || result[i] > max || result[i] < (negative ? -max : 1)) {
+                throw new DateTimeException("Invalid recurrence rule: " + rule);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the last local time an occurrence may start at
+     */
+    private static LocalDateTime parseUntil(String value, ZoneId zone) {
+        if (value.length() == 8) {
+            return LocalDate.parse(value, dateFormatter).atTime(LocalTime.MAX);
+        } else if (value.endsWith("Z")) {
+            final Instant instant = LocalDateTime.parse(value.substring(0, value.length() - 1), localDateTimeFormatter).toInstant(ZoneOffset.UTC);
+            return LocalDateTime.ofInstant(instant, zone);
+        } else {
+            return LocalDateTime.parse(value, localDateTimeFormatter);
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps Windows time zone names, as used in TZID parameters by Exchange and
+ * Outlook, to IANA time zones. Based on the territory independent ("001")
+ * mappings of the Unicode CLDR windowsZones table.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+final class WindowsZones {
+
+    private static final Map<String, String> ZONES;
+
+    static {
+        final Map<String, String> zones = new HashMap<>();
+        zones.put("Dateline Standard Time", "Etc/GMT+12");
+        zones.put("UTC-11", "Etc/GMT+11");
+        zones.put("Aleutian Standard Time", "America/Adak");
+        zones.put("Hawaiian Standard Time", "Pacific/Honolulu");
+        zones.put("Marquesas Standard Time", "Pacific/Marquesas");
+        zones.put("Alaskan Standard Time", "America/Anchorage");
+        zones.put("UTC-09", "Etc/GMT+9");
+        zones.put("Pacific Standard Time (Mexico)", "America/Tijuana");
+        zones.put("UTC-08", "Etc/GMT+8");
+        zones.put("Pacific Standard Time", "America/Los_Angeles");
+        zones.put("US Mountain Standard Time", "America/Phoenix");
+        zones.put("Mountain Standard Time (Mexico)", "America/Mazatlan");
+        zones.put("Mountain Standard Time", "America/Denver");
+        zones.put("Yukon Standard Time", "America/Whitehorse");
+        zones.put("Central America Standard Time", "America/Guatemala");
+        zones.put("Central Standard Time", "America/Chicago");
+        zones.put("Easter Island Standard Time", "Pacific/Easter");
+        zones.put("Central Standard Time (Mexico)", "America/Mexico_City");
+        zones.put("Canada Central Standard Time", "America/Regina");
+        zones.put("SA Pacific Standard Time", "America/Bogota");
+        zones.put("Eastern Standard Time (Mexico)", "America/Cancun");
+        zones.put("Eastern Standard Time", "America/New_York");
+        zones.put("Haiti Standard Time", "America/Port-au-Prince");
+        zones.put("Cuba Standard Time", "America/Havana");
+        zones.put("US Eastern Standard Time", "America/Indiana/Indianapolis");
+        zones.put("Turks And Caicos Standard Time", "America/Grand_Turk");
+        zones.put("Paraguay Standard Time", "America/Asuncion");
+        zones.put("Atlantic Standard Time", "America/Halifax");
+        zones.put("Venezuela Standard Time", "America/Caracas");
+        zones.put("Central Brazilian Standard Time", "America/Cuiaba");
+        zones.put("SA Western Standard Time", "America/La_Paz");
+        zones.put("Pacific SA Standard Time", "America/Santiago");
+        zones.put("Newfoundland Standard Time", "America/St_Johns");
+        zones.put("Tocantins Standard Time", "America/Araguaina");
+        zones.put("E. South America Standard Time", "America/Sao_Paulo");
+        zones.put("SA Eastern Standard Time", "America/Cayenne");
+        zones.put("Argentina Standard Time", "America/Argentina/Buenos_Aires");
+        zones.put("Greenland Standard Time", "America/Godthab");
+        zones.put("Montevideo Standard Time", "America/Montevideo");
+        zones.put("Magallanes Standard Time", "America/Punta_Arenas");
+        zones.put("Saint Pierre Standard Time", "America/Miquelon");
+        zones.put("Bahia Standard Time", "America/Bahia");
+        zones.put("UTC-02", "Etc/GMT+2");
+        zones.put("Mid-Atlantic Standard Time", "Etc/GMT+2");
+        zones.put("Azores Standard Time", "Atlantic/Azores");
+        zones.put("Cape Verde Standard Time", "Atlantic/Cape_Verde");
+        zones.put("UTC", "Etc/UTC");
+        zones.put("GMT Standard Time", "Europe/London");
+        zones.put("Greenwich Standard Time", "Atlantic/Reykjavik");
+        zones.put("Sao Tome Standard Time", "Africa/Sao_Tome");
+        zones.put("Morocco Standard Time", "Africa/Casablanca");
+        zones.put("W. Europe Standard Time", "Europe/Berlin");
+        zones.put("Central Europe Standard Time", "Europe/Budapest");
+        zones.put("Romance Standard Time", "Europe/Paris");
+        zones.put("Central European Standard Time", "Europe/Warsaw");
+        zones.put("W. Central Africa Standard Time", "Africa/Lagos");
+        zones.put("Jordan Standard Time", "Asia/Amman");
+        zones.put("GTB Standard Time", "Europe/Bucharest");
+        zones.put("Middle East Standard Time", "Asia/Beirut");
+        zones.put("Egypt Standard Time", "Africa/Cairo");
+        zones.put("E. Europe Standard Time", "Europe/Chisinau");
+        zones.put("Syria Standard Time", "Asia/Damascus");
+        zones.put("West Bank Standard Time", "Asia/Hebron");
+        zones.put("South Africa Standard Time", "Africa/Johannesburg");
+        zones.put("FLE Standard Time", "Europe/Kiev");
+        zones.put("Israel Standard Time", "Asia/Jerusalem");
+        zones.put("South Sudan Standard Time", "Africa/Juba");
+        zones.put("Kaliningrad Standard Time", "Europe/Kaliningrad");
+        zones.put("Sudan Standard Time", "Africa/Khartoum");
+        zones.put("Libya Standard Time", "Africa/Tripoli");
+        zones.put("Namibia Standard Time", "Africa/Windhoek");
+        zones.put("Arabic Standard Time", "Asia/Baghdad");
+        zones.put("Turkey Standard Time", "Europe/Istanbul");
+        zones.put("Arab Standard Time", "Asia/Riyadh");
+        zones.put("Belarus Standard Time", "Europe/Minsk");
+        zones.put("Russian Standard Time", "Europe/Moscow");
+        zones.put("E. Africa Standard Time", "Africa/Nairobi");
+        zones.put("Volgograd Standard Time", "Europe/Volgograd");
+        zones.put("Iran Standard Time", "Asia/Tehran");
+        zones.put("Arabian Standard Time", "Asia/Dubai");
+        zones.put("Astrakhan Standard Time", "Europe/Astrakhan");
+        zones.put("Azerbaijan Standard Time", "Asia/Baku");
+        zones.put("Russia Time Zone 3", "Europe/Samara");
+        zones.put("Mauritius Standard Time", "Indian/Mauritius");
+        zones.put("Saratov Standard Time", "Europe/Saratov");
+        zones.put("Georgian Standard Time", "Asia/Tbilisi");
+        zones.put("Caucasus Standard Time", "Asia/Yerevan");
+        zones.put("Afghanistan Standard Time", "Asia/Kabul");
+        zones.put("West Asia Standard Time", "Asia/Tashkent");
+        zones.put("Ekaterinburg Standard Time", "Asia/Yekaterinburg");
+        zones.put("Pakistan Standard Time", "Asia/Karachi");
+        zones.put("Qyzylorda Standard Time", "Asia/Qyzylorda");
+        zones.put("India Standard Time", "Asia/Kolkata");
+        zones.put("Sri Lanka Standard Time", "Asia/Colombo");
+        zones.put("Nepal Standard Time", "Asia/Kathmandu");
+        zones.put("Central Asia Standard Time", "Asia/Almaty");
+        zones.put("Bangladesh Standard Time", "Asia/Dhaka");
+        zones.put("Omsk Standard Time", "Asia/Omsk");
+        zones.put("Myanmar Standard Time", "Asia/Yangon");
+        zones.put("SE Asia Standard Time", "Asia/Bangkok");
+        zones.put("Altai Standard Time", "Asia/Barnaul");
+        zones.put("W. Mongolia Standard Time", "Asia/Hovd");
+        zones.put("North Asia Standard Time", "Asia/Krasnoyarsk");
+        zones.put("N. Central Asia Standard Time", "Asia/Novosibirsk");
+        zones.put("Tomsk Standard Time", "Asia/Tomsk");
+        zones.put("China Standard Time", "Asia/Shanghai");
+        zones.put("North Asia East Standard Time", "Asia/Irkutsk");
+        zones.put("Singapore Standard Time", "Asia/Singapore");
+        zones.put("W. Australia Standard Time", "Australia/Perth");
+        zones.put("Taipei Standard Time", "Asia/Taipei");
+        zones.put("Ulaanbaatar Standard Time", "Asia/Ulaanbaatar");
+        zones.put("Aus Central W. Standard Time", "Australia/Eucla");
+        zones.put("Transbaikal Standard Time", "Asia/Chita");
+        zones.put("Tokyo Standard Time", "Asia/Tokyo");
+        zones.put("North Korea Standard Time", "Asia/Pyongyang");
+        zones.put("Korea Standard Time", "Asia/Seoul");
+        zones.put("Yakutsk Standard Time", "Asia/Yakutsk");
+        zones.put("Cen. Australia Standard Time", "Australia/Adelaide");
+        zones.put("AUS Central Standard Time", "Australia/Darwin");
+        zones.put("E. Australia Standard Time", "Australia/Brisbane");
+        zones.put("AUS Eastern Standard Time", "Australia/Sydney");
+        zones.put("West Pacific Standard Time", "Pacific/Port_Moresby");
+        zones.put("Tasmania Standard Time", "Australia/Hobart");
+        zones.put("Vladivostok Standard Time", "Asia/Vladivostok");
+        zones.put("Lord Howe Standard Time", "Australia/Lord_Howe");
+        zones.put("Bougainville Standard Time", "Pacific/Bougainville");
+        zones.put("Russia Time Zone 10", "Asia/Srednekolymsk");
+        zones.put("Magadan Standard Time", "Asia/Magadan");
+        zones.put("Norfolk Standard Time", "Pacific/Norfolk");
+        zones.put("Sakhalin Standard Time", "Asia/Sakhalin");
+        zones.put("Central Pacific Standard Time", "Pacific/Guadalcanal");
+        zones.put("Russia Time Zone 11", "Asia/Kamchatka");
+        zones.put("Kamchatka Standard Time", "Asia/Kamchatka");
+        zones.put("New Zealand Standard Time", "Pacific/Auckland");
+        zones.put("UTC+12", "Etc/GMT-12");
+        zones.put("Fiji Standard Time", "Pacific/Fiji");
+        zones.put("Chatham Islands Standard Time", "Pacific/Chatham");
+        zones.put("UTC+13", "Etc/GMT-13");
+        zones.put("Tonga Standard Time", "Pacific/Tongatapu");
+        zones.put("Samoa Standard Time", "Pacific/Apia");
+        zones.put("Line Islands Standard Time", "Pacific/Kiritimati");
+        ZONES = Collections.unmodifiableMap(zones);
+    }
+
+    private WindowsZones() {
+    }
+
+    /**
+     * @param name Windows time zone name
+     * @return the corresponding IANA zone or null if unknown
+     */
+    static ZoneId get(String name) {
+        final String id = ZONES.get(name);
+        return id == null ? null : ZoneId.of(id);
+    }
+
+    static Map<String, String> getAll() {
+        return ZONES;
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.io.StringReader;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the CalendarInput class.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public class CalendarInputTest {
+
+    @Test
+    @DisplayName("Unfolds lines with mixed line endings")
+    void unfoldsLines() throws Exception {
+        CalendarInput input = new CalendarInput(new StringReader(
+                "A:1\r\n" +
+                "B:2\r\n" +
+                " 3\n" +
+                "\t4\r" +
+                "C:5\r\n" +
+                "\r\n" +
+                "D:6"));
+        assertEquals("A:1", input.nextLine());
+        assertEquals(1, input.getLineNumber());
+        assertEquals("B:234", input.nextLine());
+        assertEquals(2, input.getLineNumber());
+        assertEquals("C:5", input.nextLine());
+        assertEquals(5, input.getLineNumber());
+        assertEquals("D:6", input.nextLine());
+        assertEquals(7, input.getLineNumber());
+        assertNull(input.nextLine());
+        assertEquals(7, input.getReadCount());
+    }
+
+    @Test
+    @DisplayName("Unfolds lines spanning buffer boundaries")
+    void unfoldsAcrossBufferBoundaries() throws Exception {
+        final StringBuilder ics = new StringBuilder("DESCRIPTION:");
+        final StringBuilder expected = new StringBuilder("DESCRIPTION:");
+        for (int i = 0; i < 1000; i++) {
+            ics.append("\r\n ").append("folded").append(i);
+            expected.append("folded").append(i);
+        }
+        ics.append("\r\nEND:VEVENT\r\n");
+
+        CalendarInput input = new CalendarInput(new StringReader(ics.toString()), 7);
+        assertEquals(expected.toString(), input.nextLine());
+        assertEquals("END:VEVENT", input.nextLine());
+        assertNull(input.nextLine());
+    }
+
+}
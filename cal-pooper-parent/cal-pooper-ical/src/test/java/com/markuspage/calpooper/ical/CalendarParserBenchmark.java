@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Throughput benchmark for parsing many small invitations with a shared
+ * parser. Not run as part of the tests, start it with for instance:
+ * <pre>
+ * java -cp target/classes:target/test-classes com.markuspage.calpooper.ical.CalendarParserBenchmark [threads] [seconds]
+ * </pre>
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public class CalendarParserBenchmark {
+
+    private static final String INVITATION = 
+            "BEGIN:VCALENDAR\r\n" +
+            "VERSION:2.0\r\n" +
+            "PRODID:-//hacksw/handcal//NONSGML v1.0//EN\r\n" +
+            "METHOD:REQUEST\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:uid1@example.com\r\n" +
+            "DTSTAMP:19970714T170000Z\r\n" +
+            "ORGANIZER;CN=John Doe:MAILTO:john.doe@example.com\r\n" +
+            "ATTENDEE;CN=Jane Doe;RSVP=TRUE:MAILTO:jane.doe@example.com\r\n" +
+            "DTSTART:19970714T170000Z\r\n" +
+            "DTEND:19970715T035959Z\r\n" +
+            "SUMMARY:Bastille Day Party\r\n" +
+            "DESCRIPTION:Bring your own baguette. The party starts at the square\r\n" +
+            "  and continues until everybody has gone home.\r\n" +
+            "END:VEVENT\r\n" +
+            "END:VCALENDAR\r\n";
+
+    public static void main(String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final CalendarParser parser = new CalendarParser();
+
+        System.out.println("Warming up...");
+        run(parser, threads, Math.max(1, seconds / 2));
+
+        final long count = run(parser, threads, seconds);
+        System.out.println(threads + " threads parsed " + count + " invitations in " + seconds + " s: " + (count / seconds) + " ops/s");
+    }
+
+    private static long run(final CalendarParser parser, int threads, int seconds) throws Exception {
+        final long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Long>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> parseUntil(parser, deadline)));
+            }
+            long count = 0;
+            for (Future<Long> future : futures) {
+                count += future.get();
+            }
+            return count;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long parseUntil(final CalendarParser parser, long deadline) throws IOException {
+        long count = 0;
+        while (System.nanoTime() < deadline) {
+            if (parser.parseFirst(new StringReader(INVITATION)).getEvents().size() != 1) {
+                throw new IllegalStateException("Unexpected result");
+            }
+            count++;
+        }
+        return count;
+    }
+
+}
@@ -16,9 +16,18 @@
 package com.markuspage.calpooper.ical;
 
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -82,6 +91,45 @@ public class CalendarTests {
             "END:VEVENT\r\n" +
             "END:VCALENDAR";
     
+    /** Same as EXAMPLE_3 but folded with tabs and LF line endings. **/
+    private static final String EXAMPLE_4 = 
+            "BEGIN:VCALENDAR\n" +
+            "VERSION:2.0\n" +
+            "PRODID:-//hacksw/handcal//NONSGML v1.0//EN\n" +
+            "BEGIN:VEVENT\n" +
+            "UID:uid1@example.com\n" +
+            "DTSTAMP:19970714T170000Z\n" +
+            "ORGANIZER;CN=John \n" +
+            "\tDoe:MAILTO:john.doe@example.com\n" +
+            "DTSTART:19970714T170000Z\n" +
+            "DTEND:19970715T035959Z\n" +
+            "SUMMARY:Bastille Day Party\n" +
+            "\t and some more, \n" +
+            "\tand even more.\n" +
+            "GEO:48.85299;2.36885\n" +
+            "END:VEVENT\n" +
+            "END:VCALENDAR\n";
+    
+    /** Three events where the second one is malformed. **/
+    private static final String EXAMPLE_5 = 
+            "BEGIN:VCALENDAR\r\n" +
+            "VERSION:2.0\r\n" +
+            "PRODID:-//hacksw/handcal//NONSGML v1.0//EN\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:uid1@example.com\r\n" +
+            "SUMMARY:First\r\n" +
+            "END:VEVENT\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:uid2@example.com\r\n" +
+            "this is not a property\r\n" +
+            "SUMMARY:Second\r\n" +
+            "END:VEVENT\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:uid3@example.com\r\n" +
+            "SUMMARY:Third\r\n" +
+            "END:VEVENT\r\n" +
+            "END:VCALENDAR\r\n";
+    
     
     @Test
     @DisplayName("Creates a calendar")
@@ -170,4 +218,152 @@ public class CalendarTests {
         assertEquals(expectedEventProperties, actualEvent.getProperties());
         assertEquals("Bastille Day Party and some more, and even more.", actualEvent.getSummary());
     }
+    
+    @Test
+    @DisplayName("Parse example4 (folded with tabs)")
+    void parsesExample4() throws Exception {
+        CalendarParser parser = new CalendarParser();
+        Calendar calendar = parser.parseFirst(new StringReader(EXAMPLE_4));
+        assertEquals(1, calendar.getEvents().size());
+        Event actualEvent = calendar.getEvents().get(0);
+        assertEquals("MAILTO:john.doe@example.com", actualEvent.getProperties().getProperty("ORGANIZER;CN=John Doe"));
+        assertEquals("Bastille Day Party and some more, and even more.", actualEvent.getSummary());
+    }
+    
+    @Test
+    @DisplayName("Strict parsing fails with line number")
+    void strictParsingFailsWithLineNumber() throws Exception {
+        CalendarParser parser = new CalendarParser();
+        CalendarParseException ex = assertThrows(CalendarParseException.class, () -> parser.parseFirst(new StringReader(EXAMPLE_5)));
+        assertEquals(10, ex.getLineNumber());
+        assertEquals("Expected property", ex.getReason());
+    }
+    
+    @Test
+    @DisplayName("Lenient parsing skips malformed event")
+    void lenientParsingSkipsMalformedEvent() throws Exception {
+        CalendarParser parser = new CalendarParser(true, 10);
+        Calendar calendar = parser.parseFirst(new StringReader(EXAMPLE_5));
+        assertEquals(2.0, calendar.getVersion());
+        assertEquals(Arrays.asList("First", "Third"), calendar.getEvents().stream().map(Event::getSummary).collect(Collectors.toList()));
+        assertEquals(1, calendar.getErrors().size());
+        assertEquals(10, calendar.getErrors().get(0).getLineNumber());
+        assertEquals("Expected property", calendar.getErrors().get(0).getMessage());
+    }
+    
+    @Test
+    @DisplayName("Lenient parsing gives up after max errors")
+    void lenientParsingGivesUpAfterMaxErrors() throws Exception {
+        CalendarParser parser = new CalendarParser(true, 0);
+        assertThrows(CalendarParseException.class, () -> parser.parseFirst(new StringReader(EXAMPLE_5)));
+    }
+    
+    @Test
+    @DisplayName("Lenient parsing recovers from missing END:VEVENT")
+    void lenientParsingRecoversFromMissingEnd() throws Exception {
+        CalendarParser parser = new CalendarParser(true, 10);
+        Calendar calendar = parser.parseFirst(new StringReader(EXAMPLE_5.replace("this is not a property\r\nSUMMARY:Second\r\nEND:VEVENT\r\n", "")));
+        assertEquals(Arrays.asList("First", "Third"), calendar.getEvents().stream().map(Event::getSummary).collect(Collectors.toList()));
+        assertEquals(1, calendar.getErrors().size());
+        assertEquals(10, calendar.getErrors().get(0).getLineNumber());
+    }
+    
+    @Test
+    @DisplayName("Lenient parsing skips junk before the calendar")
+    void lenientParsingSkipsJunkBeforeCalendar() throws Exception {
+        CalendarParser parser = new CalendarParser(true, 10);
+        Calendar calendar = parser.parseFirst(new StringReader("HTTP/1.1 200 OK\r\n" + EXAMPLE_1));
+        assertEquals(2.0, calendar.getVersion());
+        assertEquals("-//hacksw/handcal//NONSGML v1.0//EN", calendar.getProdId());
+        assertEquals(1, calendar.getEvents().size());
+        assertEquals(1, calendar.getErrors().size());
+        assertEquals(1, calendar.getErrors().get(0).getLineNumber());
+        assertEquals("Expected VCALENDAR", calendar.getErrors().get(0).getMessage());
+        
+        calendar = parser.parseFirst(new StringReader("no calendar here\r\n"));
+        assertTrue(calendar.getEvents().isEmpty());
+        assertEquals(1, calendar.getErrors().size());
+    }
+    
+    @Test
+    @DisplayName("Lenient parsing reports a truncated file once")
+    void lenientParsingReportsTruncationOnce() throws Exception {
+        CalendarParser parser = new CalendarParser(true, 1);
+        final String valid = EXAMPLE_5.replace("this is not a property\r\n", "");
+        Calendar calendar = parser.parseFirst(new StringReader(valid.substring(0, valid.indexOf("SUMMARY:Third"))));
+        assertEquals(Arrays.asList("First", "Second"), calendar.getEvents().stream().map(Event::getSummary).collect(Collectors.toList()));
+        assertEquals(1, calendar.getErrors().size());
+        assertEquals("Unexpected end of file in VEVENT", calendar.getErrors().get(0).getMessage());
+        
+        calendar = parser.parseFirst(new StringReader(EXAMPLE_1.replace("END:VCALENDAR", "")));
+        assertEquals(1, calendar.getEvents().size());
+        assertEquals(1, calendar.getErrors().size());
+        assertEquals("Unexpected end of file in VCALENDAR", calendar.getErrors().get(0).getMessage());
+    }
+    
+    @Test
+    @DisplayName("Resume parsing after failed line")
+    void resumesParsing() throws Exception {
+        CalendarParser parser = new CalendarParser();
+        Calendar calendar = parser.parseFirst(new StringReader(EXAMPLE_5), 10);
+        assertEquals(Arrays.asList("Third"), calendar.getEvents().stream().map(Event::getSummary).collect(Collectors.toList()));
+        assertTrue(calendar.getErrors().isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Resume reports absolute line numbers")
+    void resumeReportsAbsoluteLineNumbers() throws Exception {
+        CalendarParser parser = new CalendarParser();
+        CalendarParseException ex = assertThrows(CalendarParseException.class, () -> parser.parseFirst(new StringReader(EXAMPLE_5.replace("END:VCALENDAR\r\n", "")), 10));
+        assertEquals(16, ex.getLineNumber());
+        assertEquals("Unexpected end of file in VCALENDAR", ex.getReason());
+    }
+    
+    @Test
+    @DisplayName("Resume beyond end of input fails")
+    void resumeBeyondEndFails() throws Exception {
+        CalendarParseException ex = assertThrows(CalendarParseException.class, () -> new CalendarParser().parseFirst(new StringReader(EXAMPLE_1), 1000));
+        assertEquals(13, ex.getLineNumber());
+        assertEquals("Unexpected end of file before line 1000", ex.getReason());
+        
+        Calendar calendar = new CalendarParser(true, 10).parseFirst(new StringReader(EXAMPLE_1), 1000);
+        assertTrue(calendar.getEvents().isEmpty());
+        assertEquals(1, calendar.getErrors().size());
+        assertEquals(13, calendar.getErrors().get(0).getLineNumber());
+    }
+    
+    @Test
+    @DisplayName("Parse concurrently with a shared parser")
+    void parsesConcurrently() throws Exception {
+        final CalendarParser parser = new CalendarParser(true, 10);
+        final String[] examples = {EXAMPLE_1, EXAMPLE_2, EXAMPLE_3, EXAMPLE_4, EXAMPLE_5};
+        final String[] expectedSummaries = {
+            "[Bastille Day Party]",
+            "[Bastille Day Party and some more, and even more.]",
+            "[Bastille Day Party and some more, and even more.]",
+            "[Bastille Day Party and some more, and even more.]",
+            "[First, Third]",
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        final int example = (i + offset) % examples.length;
+                        Calendar calendar = parser.parseFirst(new StringReader(examples[example]));
+                        assertEquals(expectedSummaries[example], calendar.getEvents().stream().map(Event::getSummary).collect(Collectors.toList()).toString());
+                        assertEquals(example == 4 ? 1 : 0, calendar.getErrors().size());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
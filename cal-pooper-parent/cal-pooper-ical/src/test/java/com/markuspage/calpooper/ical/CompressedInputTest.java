@@ -0,0 +1,218 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import io.airlift.compress.zstd.ZstdOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the CompressedInput and AsyncInputStream classes.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public class CompressedInputTest {
+
+    private static final String EXAMPLE = 
+            "BEGIN:VCALENDAR\r\n" +
+            "VERSION:2.0\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:uid1@example.com\r\n" +
+            "SUMMARY:Bastille Day Party\r\n" +
+            "END:VEVENT\r\n" +
+            "END:VCALENDAR\r\n";
+
+    @Test
+    @DisplayName("Parses gzip compressed input")
+    void parsesGzip() throws Exception {
+        try (InputStream in = CompressedInput.open(new ByteArrayInputStream(gzip(EXAMPLE.getBytes(StandardCharsets.UTF_8))))) {
+            Calendar calendar = new CalendarParser().parseFirst(new InputStreamReader(in, StandardCharsets.UTF_8));
+            assertEquals("Bastille Day Party", calendar.getEvents().get(0).getSummary());
+        }
+    }
+
+    @Test
+    @DisplayName("Passes through uncompressed input")
+    void passesThroughPlain() throws Exception {
+        try (InputStream in = CompressedInput.open(new ByteArrayInputStream(EXAMPLE.getBytes(StandardCharsets.UTF_8)))) {
+            assertArrayEquals(EXAMPLE.getBytes(StandardCharsets.UTF_8), in.readAllBytes());
+        }
+        try (InputStream in = CompressedInput.open(new ByteArrayInputStream(new byte[] {0x1f}))) {
+            assertArrayEquals(new byte[] {0x1f}, in.readAllBytes());
+        }
+    }
+
+    @Test
+    @DisplayName("Parses zstd compressed input")
+    void parsesZstd() throws Exception {
+        final StringBuilder sb = new StringBuilder(EXAMPLE.replace("END:VCALENDAR\r\n", ""));
+        for (int i = 0; i < 10000; i++) {
+            sb.append("BEGIN:VEVENT\r\nUID:uid").append(i).append("@example.com\r\nSUMMARY:Event ").append(i).append("\r\nEND:VEVENT\r\n");
+        }
+        sb.append("END:VCALENDAR\r\n");
+        try (InputStream in = CompressedInput.open(new ByteArrayInputStream(zstd(sb.toString().getBytes(StandardCharsets.UTF_8))))) {
+            Calendar calendar = new CalendarParser().parseFirst(new InputStreamReader(in, StandardCharsets.UTF_8));
+            assertEquals(10001, calendar.getEvents().size());
+            assertEquals("Bastille Day Party", calendar.getEvents().get(0).getSummary());
+            assertEquals("Event 9999", calendar.getEvents().get(10000).getSummary());
+        }
+    }
+
+    @Test
+    @DisplayName("Opens zstd compressed file")
+    void opensZstdFile(@TempDir Path directory) throws Exception {
+        final Path file = directory.resolve("calendar.ics.zst");
+        Files.write(file, zstd(EXAMPLE.getBytes(StandardCharsets.UTF_8)));
+        try (DecodingReader reader = new DecodingReader(CompressedInput.open(file), StandardCharsets.UTF_8)) {
+            Calendar calendar = new CalendarParser().parseFirst(reader);
+            assertEquals("Bastille Day Party", calendar.getEvents().get(0).getSummary());
+        }
+    }
+
+    @Test
+    @DisplayName("Fails on corrupt zstd input")
+    void failsOnCorruptZstd() throws Exception {
+        final byte[] zstd = {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0, 0};
+        try (InputStream in = CompressedInput.open(new ByteArrayInputStream(zstd))) {
+            assertThrows(IOException.class, () -> in.readAllBytes());
+        }
+    }
+
+    @Test
+    @DisplayName("Hands over data larger than the buffers")
+    void handsOverLargeData() throws Exception {
+        final byte[] data = new byte[100_003];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        try (InputStream in = new AsyncInputStream(new ByteArrayInputStream(data), 1000, 2)) {
+            assertArrayEquals(data, in.readAllBytes());
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    @DisplayName("Rethrows failures from the background thread")
+    void rethrowsFailures() throws Exception {
+        final InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Broken");
+            }
+        };
+        try (InputStream in = new AsyncInputStream(failing)) {
+            IOException ex = assertThrows(IOException.class, () -> in.read());
+            assertEquals("Broken", ex.getMessage());
+            ex = assertThrows(IOException.class, () -> in.read(new byte[10]));
+            assertEquals("Broken", ex.getMessage());
+        }
+    }
+
+    @Test
+    @DisplayName("Rethrows unchecked failures from the background thread")
+    void rethrowsUncheckedFailures() throws Exception {
+        final InputStream failing = new InputStream() {
+            @Override
+            public int read() {
+                throw new IllegalStateException("Broken");
+            }
+        };
+        try (InputStream in = new AsyncInputStream(failing)) {
+            IOException ex = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IOException.class, () -> in.read()));
+            assertTrue(ex.getMessage().contains("IllegalStateException: Broken"), ex.getMessage());
+            assertThrows(IOException.class, () -> in.read());
+        }
+    }
+
+    @Test
+    @DisplayName("Closes while the source is blocked ignoring interrupts")
+    void closesWhileSourceIsBlocked() throws Exception {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        final InputStream blocking = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                reading.countDown();
+                while (true) {
+                    try {
+                        closed.await();
+                        throw new IOException("Stream closed");
+                    } catch (InterruptedException ex) {
+                        // Ignored like by a blocking socket read
+                    }
+                }
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        final InputStream in = new AsyncInputStream(blocking);
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        assertTimeoutPreemptively(Duration.ofSeconds(10), in::close);
+        assertThrows(IOException.class, () -> in.read());
+    }
+
+    @Test
+    @DisplayName("Truncated gzip input keeps failing")
+    void truncatedGzipKeepsFailing() throws Exception {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append(EXAMPLE);
+        }
+        final byte[] compressed = gzip(sb.toString().getBytes(StandardCharsets.UTF_8));
+        try (InputStream in = CompressedInput.open(new ByteArrayInputStream(compressed, 0, compressed.length / 2))) {
+            assertThrows(IOException.class, () -> in.readAllBytes());
+            assertThrows(IOException.class, () -> in.read());
+        }
+    }
+
+    private static byte[] zstd(byte[] data) throws IOException {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ZstdOutputStream out = new ZstdOutputStream(bout)) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bout)) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+}
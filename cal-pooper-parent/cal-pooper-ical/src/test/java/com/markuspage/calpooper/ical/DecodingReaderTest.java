@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Tests for the DecodingReader class.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public class DecodingReaderTest {
+
+    private static final String TEXT = "SUMMARY:Kräftskiva på Södermalm - €5\r\n";
+
+    /**
+     * Test of byte order mark detection.
+     * @param bom Byte order mark in hex
+     * @param encoding Charset the text is encoded with
+     * @param given Charset given to the reader
+     */
+    @ParameterizedTest(name = "BOM {0} with {1} given {2}")
+    @CsvSource({
+        "'', UTF-8, UTF-8",
+        "'', ISO-8859-15, ISO-8859-15",
+        "EFBBBF, UTF-8, UTF-8",
+        "EFBBBF, UTF-8, ISO-8859-1",
+        "FEFF, UTF-16BE, UTF-8",
+        "FFFE, UTF-16LE, UTF-8",
+    })
+    public void testByteOrderMark(String bom, String encoding, String given) throws Exception {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        for (int i = 0; i < bom.length(); i += 2) {
+            bout.write(Integer.parseInt(bom.substring(i, i + 2), 16));
+        }
+        bout.write(TEXT.getBytes(Charset.forName(encoding)));
+
+        try (DecodingReader reader = new DecodingReader(new ByteArrayInputStream(bout.toByteArray()), Charset.forName(given))) {
+            assertEquals(TEXT, readAll(reader));
+            assertEquals(Charset.forName(encoding), reader.getCharset());
+        }
+    }
+
+    @Test
+    @DisplayName("Decodes characters split across buffers")
+    void decodesAcrossBuffers() throws Exception {
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            expected.append(TEXT);
+        }
+        final byte[] data = expected.toString().getBytes(StandardCharsets.UTF_8);
+        try (DecodingReader reader = new DecodingReader(Channels.newChannel(new ByteArrayInputStream(data)), StandardCharsets.UTF_8, 7)) {
+            assertEquals(expected.toString(), readAll(reader));
+        }
+    }
+
+    @Test
+    @DisplayName("Replaces malformed input")
+    void replacesMalformedInput() throws Exception {
+        final byte[] data = {'A', (byte) 0xc3, 'B'};
+        try (DecodingReader reader = new DecodingReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8)) {
+            assertEquals("A�B", readAll(reader));
+        }
+    }
+
+    @Test
+    @DisplayName("Reads empty input")
+    void readsEmptyInput() throws Exception {
+        try (DecodingReader reader = new DecodingReader(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_8)) {
+            assertEquals(-1, reader.read());
+            assertEquals(-1, reader.read());
+        }
+    }
+
+    private static String readAll(Reader reader) throws Exception {
+        final StringBuilder sb = new StringBuilder();
+        final char[] buffer = new char[5];
+        int n;
+        while ((n = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, n);
+        }
+        return sb.toString();
+    }
+
+}
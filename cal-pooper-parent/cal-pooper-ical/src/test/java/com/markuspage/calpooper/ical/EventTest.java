@@ -15,18 +15,22 @@
  */
 package com.markuspage.calpooper.ical;
 
+import java.time.DateTimeException;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.chrono.IsoChronology;
 import java.time.format.DateTimeFormatter;
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.ResolverStyle;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Properties;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -97,4 +101,126 @@ public class EventTest {
         assertEquals(expected, ISO_DATE_TIME_WITHOUT_ZONE_REGION_ID.format(result.toInstant().atZone(ZoneId.of("Europe/Stockholm"))));
     }
     
+    /**
+     * Test of getStart and getEnd methods, of class Event.
+     * @param startName DTSTART property name
+     * @param startValue DTSTART property value
+     * @param duration DURATION property value or empty
+     * @param expectedStart Expected start in ISO format
+     * @param expectedEnd Expected end in ISO format
+     */
+    @ParameterizedTest(name = "Start {0}:{1} duration {2}")
+    @CsvSource({
+        "DTSTART, 20201113T090000Z, PT30M, 2020-11-13T09:00:00Z, 2020-11-13T09:30:00Z",
+        "DTSTART;TZID=Europe/Stockholm, 20201113T090000, P1W, 2020-11-13T08:00:00Z, 2020-11-20T08:00:00Z",
+        "DTSTART;TZID=\"America/New_York\", 20201113T090000, P1DT1H, 2020-11-13T14:00:00Z, 2020-11-14T15:00:00Z",
+        "DTSTART;TZID=W. Europe Standard Time, 20200908T090000, PT1H, 2020-09-08T07:00:00Z, 2020-09-08T08:00:00Z",
+        "DTSTART;TZID=Pacific Standard Time, 20200908T090000, PT1H, 2020-09-08T16:00:00Z, 2020-09-08T17:00:00Z",
+        "DTSTART, 20200908T090000, '', 2020-09-08T07:00:00Z, 2020-09-08T07:00:00Z",
+        "DTSTART;VALUE=DATE, 20201113, '', 2020-11-12T23:00:00Z, 2020-11-13T23:00:00Z",
+        "DTSTART;VALUE=DATE, 20201025, P1D, 2020-10-24T22:00:00Z, 2020-10-25T23:00:00Z",
+        "DTSTART;TZID=Europe/Stockholm, 20201024T120000, P1DT1H, 2020-10-24T10:00:00Z, 2020-10-25T12:00:00Z",
+        "DTSTART;TZID=Europe/Stockholm, 20201024T120000, PT25H, 2020-10-24T10:00:00Z, 2020-10-25T11:00:00Z",
+        "DTSTART;TZID=Europe/Stockholm, 20201030T120000, -P1W, 2020-10-30T11:00:00Z, 2020-10-23T10:00:00Z",
+    })
+    public void testGetStartAndEnd(String startName, String startValue, String duration, String expectedStart, String expectedEnd) {
+        Properties properties = new Properties();
+        properties.setProperty(startName, startValue);
+        if (duration != null && !duration.isEmpty()) {
+            properties.setProperty("DURATION", duration);
+        }
+        
+        Event instance = new Event(properties);
+        assertEquals(expectedStart, instance.getStart(ZoneId.of("Europe/Stockholm")).toString());
+        assertEquals(expectedEnd, instance.getEnd(ZoneId.of("Europe/Stockholm")).toString());
+    }
+    
+    /**
+     * Test of getOccurrences method with recurrence rules, of class Event.
+     * @param startValue DTSTART property value in Europe/Stockholm
+     * @param rule RRULE property value
+     * @param expected Expected start of each occurrence in ISO format
+     */
+    @ParameterizedTest(name = "Recurrence {1} from {0}")
+    @CsvSource({
+        "20201013T100000, FREQ=MONTHLY;BYDAY=2TU;COUNT=3, 2020-10-13T08:00:00Z 2020-11-10T09:00:00Z 2020-12-08T09:00:00Z",
+        "20201001T100000, FREQ=DAILY;INTERVAL=2;UNTIL=20201007T080000Z, 2020-10-01T08:00:00Z 2020-10-03T08:00:00Z 2020-10-05T08:00:00Z 2020-10-07T08:00:00Z",
+        "20201031T100000, FREQ=MONTHLY;BYMONTHDAY=-1;COUNT=3, 2020-10-31T09:00:00Z 2020-11-30T09:00:00Z 2020-12-31T09:00:00Z",
+        "20200131T100000, FREQ=MONTHLY;COUNT=3, 2020-01-31T09:00:00Z 2020-03-31T08:00:00Z 2020-05-31T08:00:00Z",
+        "20191027T100000, FREQ=YEARLY;BYMONTH=10;BYDAY=-1SU, 2019-10-27T09:00:00Z 2020-10-25T09:00:00Z",
+        "20201006T100000, 'FREQ=WEEKLY;INTERVAL=2;BYDAY=TU,TH;COUNT=4', 2020-10-06T08:00:00Z 2020-10-08T08:00:00Z 2020-10-20T08:00:00Z 2020-10-22T08:00:00Z",
+        "20201001T100000, FREQ=MONTHLY;BYMONTHDAY=15;COUNT=2, 2020-10-01T08:00:00Z 2020-10-15T08:00:00Z",
+        "20201230T100000, FREQ=HOURLY;INTERVAL=12, 2020-12-30T09:00:00Z 2020-12-30T21:00:00Z 2020-12-31T09:00:00Z 2020-12-31T21:00:00Z",
+    })
+    public void testGetOccurrences(String startValue, String rule, String expected) {
+        Properties properties = new Properties();
+        properties.setProperty("DTSTART;TZID=Europe/Stockholm", startValue);
+        properties.setProperty("DURATION", "PT1H");
+        properties.setProperty("RRULE", rule);
+
+        Event instance = new Event(properties);
+        IntervalSet occurrences = instance.getOccurrences(ZoneId.of("Europe/Stockholm"),
+                Instant.parse("2019-01-01T00:00:00Z").toEpochMilli(), Instant.parse("2021-01-01T00:00:00Z").toEpochMilli(), Collections.emptySet());
+        StringBuilder starts = new StringBuilder();
+        for (int i = 0; i < occurrences.size(); i++) {
+            if (i > 0) {
+                starts.append(' ');
+            }
+            starts.append(Instant.ofEpochMilli(occurrences.getStart(i)));
+            assertEquals(3600_000, occurrences.getEnd(i) - occurrences.getStart(i));
+        }
+        assertEquals(expected, starts.toString());
+    }
+
+    /**
+     * Test of getOccurrences method with dates, EXDATE and RDATE, of class
+     * Event.
+     */
+    @Test
+    public void testGetOccurrencesWithDates() {
+        Properties properties = new Properties();
+        properties.setProperty("DTSTART;VALUE=DATE", "20201024");
+        properties.setProperty("DTEND;VALUE=DATE", "20201026");
+        properties.setProperty("RRULE", "FREQ=WEEKLY;COUNT=3");
+        properties.setProperty("EXDATE;VALUE=DATE", "20201031");
+        properties.setProperty("RDATE;VALUE=PERIOD", "20201105T120000Z/PT1H");
+
+        Event instance = new Event(properties);
+        IntervalSet occurrences = instance.getOccurrences(ZoneId.of("Europe/Stockholm"),
+                Instant.parse("2020-10-01T00:00:00Z").toEpochMilli(), Instant.parse("2020-12-01T00:00:00Z").toEpochMilli(), Collections.emptySet());
+        assertEquals(3, occurrences.size());
+        assertEquals("2020-10-23T22:00:00Z", Instant.ofEpochMilli(occurrences.getStart(0)).toString());
+        assertEquals("2020-10-25T23:00:00Z", Instant.ofEpochMilli(occurrences.getEnd(0)).toString());
+        assertEquals("2020-11-05T12:00:00Z", Instant.ofEpochMilli(occurrences.getStart(1)).toString());
+        assertEquals("2020-11-05T13:00:00Z", Instant.ofEpochMilli(occurrences.getEnd(1)).toString());
+        assertEquals("2020-11-06T23:00:00Z", Instant.ofEpochMilli(occurrences.getStart(2)).toString());
+        assertEquals("2020-11-08T23:00:00Z", Instant.ofEpochMilli(occurrences.getEnd(2)).toString());
+    }
+
+    /**
+     * Tests that an unknown TZID is reported instead of being replaced by the
+     * default zone.
+     */
+    @Test
+    public void testGetStartUnknownZone() {
+        Properties properties = new Properties();
+        properties.setProperty("DTSTART;TZID=Customized Time Zone", "20200908T090000");
+
+        Event instance = new Event(properties);
+        DateTimeException ex = assertThrows(DateTimeException.class, () -> instance.getStart(ZoneId.of("Europe/Stockholm")));
+        assertEquals("Unknown time zone: Customized Time Zone", ex.getMessage());
+    }
+
+    /**
+     * Tests that all Windows time zone names map to known zones.
+     */
+    @Test
+    public void testWindowsZones() {
+        for (String name : WindowsZones.getAll().keySet()) {
+            assertNotNull(WindowsZones.get(name), name);
+        }
+        assertEquals(ZoneId.of("Europe/Berlin"), WindowsZones.get("W. Europe Standard Time"));
+        assertNull(WindowsZones.get("Europe/Berlin"));
+    }
+
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 Markus Kilås <markus@kilas.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.markuspage.calpooper.ical;
+
+import java.io.StringReader;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the FreeBusy and IntervalSet classes.
+ *
+ * @author Markus Kilås <markus@kilas.se>
+ */
+public class FreeBusyTest {
+
+    private static final ZoneId STOCKHOLM = ZoneId.of("Europe/Stockholm");
+
+    /** Calendar with busy, transparent, cancelled, zoned and all day events. **/
+    private static final String EXAMPLE = 
+            "BEGIN:VCALENDAR\r\n" +
+            "VERSION:2.0\r\n" +
+            "PRODID:-//hacksw/handcal//NONSGML v1.0//EN\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:busy@example.com\r\n" +
+            "DTSTART:20201113T090000Z\r\n" +
+            "DTEND:20201113T100000Z\r\n" +
+            "END:VEVENT\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:overlapping@example.com\r\n" +
+            "DTSTART;TZID=Europe/Stockholm:20201113T103000\r\n" +
+            "DURATION:PT1H\r\n" +
+            "STATUS:TENTATIVE\r\n" +
+            "END:VEVENT\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:transparent@example.com\r\n" +
+            "DTSTART:20201113T120000Z\r\n" +
+            "DTEND:20201113T130000Z\r\n" +
+            "TRANSP:TRANSPARENT\r\n" +
+            "END:VEVENT\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:cancelled@example.com\r\n" +
+            "DTSTART:20201113T140000Z\r\n" +
+            "DTEND:20201113T150000Z\r\n" +
+            "STATUS:CANCELLED\r\n" +
+            "END:VEVENT\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:allday@example.com\r\n" +
+            "DTSTART;VALUE=DATE:20201115\r\n" +
+            "END:VEVENT\r\n" +
+            "END:VCALENDAR\r\n";
+
+    /**
+     * Calendar with a weekly stand-up spanning the end of daylight saving
+     * time, with two occurrences excluded, one moved and one cancelled.
+     **/
+    private static final String RECURRING =
+            "BEGIN:VCALENDAR\r\n" +
+            "VERSION:2.0\r\n" +
+            "PRODID:-//hacksw/handcal//NONSGML v1.0//EN\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:standup@example.com\r\n" +
+            "DTSTART;TZID=Europe/Stockholm:20201005T090000\r\n" +
+            "DTEND;TZID=Europe/Stockholm:20201005T091500\r\n" +
+            "RRULE:FREQ=WEEKLY;BYDAY=MO,WE,FR\r\n" +
+            "EXDATE;TZID=Europe/Stockholm:20201021T090000\r\n" +
+            "EXDATE;TZID=Europe/Stockholm:20201030T090000\r\n" +
+            "END:VEVENT\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:standup@example.com\r\n" +
+            "RECURRENCE-ID;TZID=Europe/Stockholm:20201028T090000\r\n" +
+            "DTSTART;TZID=Europe/Stockholm:20201028T140000\r\n" +
+            "DTEND;TZID=Europe/Stockholm:20201028T150000\r\n" +
+            "END:VEVENT\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:standup@example.com\r\n" +
+            "RECURRENCE-ID;TZID=Europe/Stockholm:20201023T090000\r\n" +
+            "DTSTART;TZID=Europe/Stockholm:20201023T090000\r\n" +
+            "DTEND;TZID=Europe/Stockholm:20201023T091500\r\n" +
+            "STATUS:CANCELLED\r\n" +
+            "END:VEVENT\r\n" +
+            "END:VCALENDAR\r\n";
+
+    @Test
+    @DisplayName("Gets busy time honoring TRANSP and STATUS")
+    void getsBusyTime() throws Exception {
+        Calendar calendar = new CalendarParser().parseFirst(new StringReader(EXAMPLE));
+        IntervalSet busy = FreeBusy.busy(calendar, STOCKHOLM, millis("2020-11-01T00:00:00Z"), millis("2020-12-01T00:00:00Z"));
+        assertEquals(2, busy.size());
+        assertEquals(millis("2020-11-13T09:00:00Z"), busy.getStart(0));
+        assertEquals(millis("2020-11-13T10:30:00Z"), busy.getEnd(0));
+        assertEquals(millis("2020-11-14T23:00:00Z"), busy.getStart(1));
+        assertEquals(millis("2020-11-15T23:00:00Z"), busy.getEnd(1));
+    }
+
+    @Test
+    @DisplayName("Gets busy time within window only")
+    void getsBusyTimeWithinWindow() throws Exception {
+        Calendar calendar = new CalendarParser().parseFirst(new StringReader(EXAMPLE));
+        IntervalSet busy = FreeBusy.busy(calendar, STOCKHOLM, millis("2020-11-13T10:00:00Z"), millis("2020-11-14T00:00:00Z"));
+        assertEquals(1, busy.size());
+        assertEquals(millis("2020-11-13T09:30:00Z"), busy.getStart(0));
+        assertEquals(millis("2020-11-13T10:30:00Z"), busy.getEnd(0));
+    }
+
+    @Test
+    @DisplayName("Expands recurring events and applies overrides")
+    void expandsRecurringEvents() throws Exception {
+        Calendar calendar = new CalendarParser().parseFirst(new StringReader(RECURRING));
+        IntervalSet busy = FreeBusy.busy(calendar, STOCKHOLM, millis("2020-10-19T00:00:00Z"), millis("2020-11-02T09:00:00Z"));
+        assertEquals("[" +
+                millis("2020-10-19T07:00:00Z") + "/" + millis("2020-10-19T07:15:00Z") + ", " +
+                millis("2020-10-26T08:00:00Z") + "/" + millis("2020-10-26T08:15:00Z") + ", " +
+                millis("2020-10-28T13:00:00Z") + "/" + millis("2020-10-28T14:00:00Z") + ", " +
+                millis("2020-11-02T08:00:00Z") + "/" + millis("2020-11-02T08:15:00Z") + "]",
+                busy.toString());
+    }
+
+    @Test
+    @DisplayName("Fails on unsupported recurrence rules")
+    void failsOnUnsupportedRecurrence() throws Exception {
+        Calendar calendar = new CalendarParser().parseFirst(new StringReader(RECURRING.replace("FREQ=WEEKLY;BYDAY=MO,WE,FR", "FREQ=MONTHLY;BYDAY=MO,TU,WE,TH,FR;BYSETPOS=-1")));
+        DateTimeException ex = assertThrows(DateTimeException.class, () -> FreeBusy.busy(calendar, STOCKHOLM, 0, millis("2020-11-02T00:00:00Z")));
+        assertEquals("Unsupported recurrence rule: FREQ=MONTHLY;BYDAY=MO,TU,WE,TH,FR;BYSETPOS=-1", ex.getMessage());
+    }
+
+    @Test
+    @DisplayName("Merges unsorted and overlapping intervals")
+    void mergesIntervals() {
+        IntervalSet set = IntervalSet.of(new long[] {50, 10, 20, 40, 70, 5}, new long[] {60, 30, 25, 50, 70, 1}, 6);
+        assertEquals("[10/30, 40/60]", set.toString());
+    }
+
+    @Test
+    @DisplayName("Finds common free time")
+    void findsCommonFree() {
+        IntervalSet a = IntervalSet.of(new long[] {10, 50}, new long[] {20, 60}, 2);
+        IntervalSet b = IntervalSet.of(new long[] {15, 80}, new long[] {30, 90}, 2);
+        IntervalSet c = IntervalSet.of(new long[] {0}, new long[] {5}, 1);
+        assertEquals("[0/5, 10/30, 50/60, 80/90]", IntervalSet.union(Arrays.asList(a, b, c)).toString());
+        assertEquals("[5/10, 30/50, 60/80, 90/100]", FreeBusy.commonFree(Arrays.asList(a, b, c), 0, 100, 0).toString());
+        assertEquals("[30/50, 60/80]", FreeBusy.commonFree(Arrays.asList(a, b, c), 0, 100, 20).toString());
+        assertEquals("[32/50, 60/70]", FreeBusy.commonFree(Arrays.asList(a, b, c), 32, 70, 0).toString());
+        assertEquals("[0/100]", FreeBusy.commonFree(new ArrayList<>(), 0, 100, 0).toString());
+    }
+
+    @Test
+    @DisplayName("Union by k-way merge matches merging all intervals at once")
+    void unionMatchesMerge() {
+        final Random random = new Random(4711);
+        final List<IntervalSet> sets = new ArrayList<>();
+        final long[] allStarts = new long[200 * 50];
+        final long[] allEnds = new long[200 * 50];
+        int count = 0;
+        for (int i = 0; i < 200; i++) {
+            final long[] starts = new long[50];
+            final long[] ends = new long[50];
+            for (int j = 0; j < 50; j++) {
+                starts[j] = random.nextInt(100_000);
+                ends[j] = starts[j] + random.nextInt(100);
+                allStarts[count] = starts[j];
+                allEnds[count] = ends[j];
+                count++;
+            }
+            sets.add(IntervalSet.of(starts, ends, starts.length));
+        }
+        assertEquals(IntervalSet.of(allStarts, allEnds, count), IntervalSet.union(sets));
+    }
+
+    @Test
+    @DisplayName("Formats VFREEBUSY within window")
+    void formatsVFreeBusy() {
+        IntervalSet busy = IntervalSet.of(
+                new long[] {millis("2020-11-13T08:00:00Z"), millis("2020-11-13T12:00:00Z")},
+                new long[] {millis("2020-11-13T10:00:00Z"), millis("2020-11-13T13:00:00Z")}, 2);
+        assertEquals(
+                "BEGIN:VFREEBUSY\r\n" +
+                "UID:fb1@example.com\r\n" +
+                "DTSTAMP:20201112T000000Z\r\n" +
+                "DTSTART:20201113T090000Z\r\n" +
+                "DTEND:20201113T170000Z\r\n" +
+                "FREEBUSY:20201113T090000Z/20201113T100000Z\r\n" +
+                "FREEBUSY:20201113T120000Z/20201113T130000Z\r\n" +
+                "END:VFREEBUSY\r\n",
+                FreeBusy.toVFreeBusy(busy, millis("2020-11-13T09:00:00Z"), millis("2020-11-13T17:00:00Z"), "fb1@example.com", millis("2020-11-12T00:00:00Z")));
+    }
+
+    private static long millis(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+
+}